@@ -0,0 +1,65 @@
+package com.library.library.benchmark;
+
+import com.library.library.LibraryApiApplication;
+import com.library.library.dataset.DatasetGenerator;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Boots the application once per benchmark fork against an in-memory H2 database, seeded by the
+ * {@link DatasetGenerator} with books {@code 1..books} and {@code loansPerBook} returned loans per book on
+ * average, plus the default share of open loans.
+ */
+public final class BenchmarkContext {
+
+    static final String[] WORDS = DatasetGenerator.WORDS;
+
+    private static ConfigurableApplicationContext context;
+
+    private BenchmarkContext(){
+    }
+
+    public static synchronized ConfigurableApplicationContext start(int books, int loansPerBook){
+        if (context != null) {
+            return context;
+        }
+        SpringApplication application = new SpringApplication(LibraryApiApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setAdditionalProfiles("dataset");
+        application.setDefaultProperties(defaultProperties(books, loansPerBook));
+        context = application.run();
+        return context;
+    }
+
+    public static synchronized void stop(){
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    public static String isbn(long bookId){
+        return DatasetGenerator.isbn(bookId);
+    }
+
+    public static String customer(int index){
+        return DatasetGenerator.customer(index);
+    }
+
+    private static Map<String, Object> defaultProperties(int books, int loansPerBook){
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("application.dataset.books", books);
+        properties.put("application.dataset.loans", (long) books * loansPerBook);
+        properties.put("application.dataset.customers", Math.max(1, books / 10));
+        properties.put("application.dataset.history-days", 30);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.open-in-view", "false");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        return properties;
+    }
+}
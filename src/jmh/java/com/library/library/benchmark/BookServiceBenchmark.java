@@ -0,0 +1,56 @@
+package com.library.library.benchmark;
+
+import com.library.library.api.model.Book;
+import com.library.library.api.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book search by example and ISBN lookup through the service layer.
+ * Dataset size is set with {@code -p books=...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"10000"})
+    public int books;
+
+    @Param({"1"})
+    public int loansPerBook;
+
+    private BookService bookService;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        bookService = BenchmarkContext.start(books, loansPerBook).getBean(BookService.class);
+        pageRequest = PageRequest.of(0, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        BenchmarkContext.stop();
+    }
+
+    @Benchmark
+    public Page<Book> findByExample(){
+        String word = BenchmarkContext.WORDS[ThreadLocalRandom.current().nextInt(BenchmarkContext.WORDS.length)];
+        Book filter = Book.builder().title(word).build();
+        return bookService.find(filter, pageRequest);
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByIsbn(){
+        return bookService.getBookByIsbn(BenchmarkContext.isbn(1 + ThreadLocalRandom.current().nextInt(books)));
+    }
+}
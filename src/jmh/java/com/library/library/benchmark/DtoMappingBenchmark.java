@@ -0,0 +1,69 @@
+package com.library.library.benchmark;
+
+import com.library.library.api.dto.BookDto;
+import com.library.library.api.dto.LoanDto;
+import com.library.library.api.mapper.BookMapper;
+import com.library.library.api.mapper.BookMapperImpl;
+import com.library.library.api.mapper.LoanMapper;
+import com.library.library.api.mapper.LoanMapperImpl;
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of the loan listing mapping: the reflective ModelMapper path the controllers used to take
+ * versus the generated mappers. Run with {@code -prof gc} to get the per-row allocation (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+
+    private Book book;
+    private Loan loan;
+
+    @Setup
+    public void setUp(){
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapperImpl();
+        loanMapper = new LoanMapperImpl(bookMapper);
+
+        book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("123").build();
+        loan = Loan.builder().id(1L).book(book).customer("Fulano")
+                .customerEmail("fulano@email.com").loanDate(LocalDate.now()).build();
+    }
+
+    @Benchmark
+    public BookDto modelMapperBook(){
+        return modelMapper.map(book, BookDto.class);
+    }
+
+    @Benchmark
+    public BookDto generatedBook(){
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public LoanDto modelMapperLoanRow(){
+        BookDto bookDto = modelMapper.map(loan.getBook(), BookDto.class);
+        LoanDto loanDto = modelMapper.map(loan, LoanDto.class);
+        loanDto.setBookDto(bookDto);
+        return loanDto;
+    }
+
+    @Benchmark
+    public LoanDto generatedLoanRow(){
+        return loanMapper.toDto(loan);
+    }
+}
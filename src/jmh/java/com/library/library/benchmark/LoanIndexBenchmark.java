@@ -0,0 +1,148 @@
+package com.library.library.benchmark;
+
+import com.library.library.dataset.DatasetGenerator;
+import com.library.library.dataset.DatasetProperties;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The loan and book query shapes against a large H2 dataset, before ({@code schema=1}, the bare tables) and
+ * after ({@code schema=2}, indexes and non-null {@code returned}) the index migration. The query plans are
+ * printed once per trial. Runs plain JDBC so only the database work is measured:
+ * {@code -Djmh.args="LoanIndexBenchmark -p books=1000000 -p loansPerBook=3"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoanIndexBenchmark {
+
+    private static final String FIND_BY_ISBN = "select id, title, author, isbn from book where isbn = ?";
+
+    @Param({"1", "2"})
+    public String schema;
+
+    @Param({"500000"})
+    public int books;
+
+    @Param({"4"})
+    public int loansPerBook;
+
+    private Connection connection;
+    private PreparedStatement findByIsbn;
+    private PreparedStatement existsActiveLoan;
+    private PreparedStatement lateLoans;
+    private PreparedStatement findByIsbnOrCustomer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = "jdbc:h2:mem:index-v" + schema + ";DB_CLOSE_DELAY=-1";
+        Flyway.configure().dataSource(url, "sa", "").target(schema).load().migrate();
+        connection = DriverManager.getConnection(url, "sa", "");
+        seed(url);
+
+        String notReturned = "1".equals(schema) ? "(l.returned is null or l.returned = false)" : "l.returned = false";
+        String existsSql = "select count(l.id) from loan l where l.id_book = ? and " + notReturned;
+        String lateSql = "select l.id, l.customer, l.costomer_email, l.id_book, l.loan_date from loan l " +
+                "where l.loan_date <= dateadd('DAY', -4, current_date) and " + notReturned;
+        String searchSql = "select l.id, l.customer, l.costomer_email, b.id, b.title, b.author, b.isbn " +
+                "from loan l join book b on b.id = l.id_book where b.isbn = ? or l.customer = ? limit 20";
+
+        for (String sql : new String[]{FIND_BY_ISBN, existsSql, lateSql, searchSql}) {
+            explain(sql);
+        }
+        findByIsbn = connection.prepareStatement(FIND_BY_ISBN);
+        existsActiveLoan = connection.prepareStatement(existsSql);
+        lateLoans = connection.prepareStatement(lateSql);
+        findByIsbnOrCustomer = connection.prepareStatement(searchSql);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long findByIsbn() throws SQLException {
+        findByIsbn.setString(1, BenchmarkContext.isbn(randomBook()));
+        return count(findByIsbn);
+    }
+
+    @Benchmark
+    public long existsByBookAndNotReturned() throws SQLException {
+        existsActiveLoan.setLong(1, randomBook());
+        return count(existsActiveLoan);
+    }
+
+    @Benchmark
+    public long findbyLoanDateLessThanAndNotReturned() throws SQLException {
+        return count(lateLoans);
+    }
+
+    @Benchmark
+    public long findByBookIsbnOrCustomer() throws SQLException {
+        int book = randomBook();
+        findByIsbnOrCustomer.setString(1, BenchmarkContext.isbn(book));
+        findByIsbnOrCustomer.setString(2, BenchmarkContext.customer(book / 10));
+        return count(findByIsbnOrCustomer);
+    }
+
+    private int randomBook() {
+        return 1 + ThreadLocalRandom.current().nextInt(books);
+    }
+
+    private static long count(PreparedStatement statement) throws SQLException {
+        long rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Books 1..n and about {@code loansPerBook} loans per book from the {@link DatasetGenerator}, which only
+     * writes columns of the first schema, so both schemas get the same rows.
+     */
+    private void seed(String url) throws SQLException {
+        DatasetProperties dataset = new DatasetProperties();
+        dataset.setBooks(books);
+        dataset.setLoans((long) books * loansPerBook);
+        dataset.setCustomers(Math.max(1, books / 10));
+        dataset.setHistoryDays(30);
+        new DatasetGenerator(new DriverManagerDataSource(url, "sa", ""), dataset).generate();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("analyze");
+        }
+    }
+
+    private void explain(String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setString(i, "1");
+            }
+            try (ResultSet plan = statement.executeQuery()) {
+                while (plan.next()) {
+                    System.out.println("[schema " + schema + "] " + plan.getString(1));
+                }
+            }
+        }
+    }
+}
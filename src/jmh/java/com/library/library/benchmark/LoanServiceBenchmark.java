@@ -0,0 +1,90 @@
+package com.library.library.benchmark;
+
+import com.library.library.api.dto.LoanDto;
+import com.library.library.api.dto.LoanFilterDto;
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LoanListItem;
+import com.library.library.api.resource.LoanController;
+import com.library.library.api.service.BookService;
+import com.library.library.api.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loan creation, loan search (service and controller, including DTO mapping) and the late-loan query.
+ * Dataset size is set with {@code -p books=... -p loansPerBook=...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+    @Param({"10000"})
+    public int books;
+
+    @Param({"5"})
+    public int loansPerBook;
+
+    private LoanService loanService;
+    private LoanController loanController;
+    private Book book;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        ConfigurableApplicationContext context = BenchmarkContext.start(books, loansPerBook);
+        loanService = context.getBean(LoanService.class);
+        loanController = context.getBean(LoanController.class);
+        book = context.getBean(BookService.class).save(Book.builder()
+                .title("benchmark").author("benchmark").isbn("benchmark-loan").build());
+        pageRequest = PageRequest.of(0, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        BenchmarkContext.stop();
+    }
+
+    /**
+     * Creates a loan and returns it right away, so the same book is available on the next invocation.
+     */
+    @Benchmark
+    public Loan createLoan(){
+        Loan loan = loanService.save(Loan.builder().book(book).customer("benchmark")
+                .customerEmail("benchmark@library-api.com").loanDate(LocalDate.now()).build());
+        loan.setReturned(true);
+        return loanService.update(loan);
+    }
+
+    @Benchmark
+    public Page<LoanListItem> findLoans(){
+        return loanService.find(randomFilter(), pageRequest);
+    }
+
+    @Benchmark
+    public Page<LoanDto> findLoansWithMapping(){
+        return loanController.find(randomFilter(), pageRequest);
+    }
+
+    @Benchmark
+    public List<Loan> lateLoans(){
+        return loanService.getAllLateLoans();
+    }
+
+    private LoanFilterDto randomFilter(){
+        int index = ThreadLocalRandom.current().nextInt(books);
+        return LoanFilterDto.builder().isbn(BenchmarkContext.isbn(index + 1))
+                .customer(BenchmarkContext.customer(index / 10)).build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.library.library.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of the measured requests, per operation and in microseconds. The response time is taken from
+ * the moment the request was scheduled, so time spent waiting behind a slow response is counted; the
+ * service time is taken from the moment it was actually handed to the client.
+ */
+final class LatencyReport {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Operation, Entry> entries = new EnumMap<>(Operation.class);
+
+    LatencyReport(Iterable<Operation> operations){
+        operations.forEach(operation -> entries.put(operation, new Entry()));
+    }
+
+    void record(Operation operation, Workload.Outcome outcome, long scheduledNanos, long sentNanos, long doneNanos){
+        Entry entry = entries.get(operation);
+        switch (outcome) {
+            case SKIPPED:
+                entry.skipped.increment();
+                return;
+            case FAILED:
+                entry.failed.increment();
+                break;
+            default:
+                entry.ok.increment();
+        }
+        entry.response.recordValue(micros(doneNanos - scheduledNanos));
+        entry.service.recordValue(micros(doneNanos - sentNanos));
+    }
+
+    /**
+     * Records a request that was due but not sent because too many were already outstanding as a failure
+     * answered when it was given up, so the response percentiles do not leave out the worst moments of the
+     * run. The dropped column tells how many of the failures were never sent.
+     */
+    void dropped(Operation operation, long scheduledNanos, long droppedNanos){
+        Entry entry = entries.get(operation);
+        entry.dropped.increment();
+        entry.failed.increment();
+        entry.response.recordValue(micros(droppedNanos - scheduledNanos));
+    }
+
+    void print(PrintStream out, double seconds){
+        out.printf("%-13s %9s %9s %7s %7s %7s | %9s %9s %9s %9s | %9s %9s%n", "operation", "requests", "req/s",
+                "failed", "dropped", "skipped", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p50", "svc p99");
+        Histogram allResponses = new Histogram(SIGNIFICANT_DIGITS);
+        Histogram allServices = new Histogram(SIGNIFICANT_DIGITS);
+        long failed = 0;
+        long dropped = 0;
+        long skipped = 0;
+        for (Map.Entry<Operation, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            print(out, e.getKey().key(), seconds, entry.failed.sum(), entry.dropped.sum(), entry.skipped.sum(),
+                    entry.response, entry.service);
+            allResponses.add(entry.response);
+            allServices.add(entry.service);
+            failed += entry.failed.sum();
+            dropped += entry.dropped.sum();
+            skipped += entry.skipped.sum();
+        }
+        print(out, "total", seconds, failed, dropped, skipped, allResponses, allServices);
+    }
+
+    /**
+     * Writes the full percentile distribution of each operation, in milliseconds, in the format read by the
+     * HdrHistogram plotter.
+     */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<Operation, Entry> e : entries.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(e.getKey().key() + ".hgrm")))) {
+                e.getValue().response.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static void print(PrintStream out, String name, double seconds, long failed, long dropped, long skipped,
+                              Histogram response, Histogram service){
+        out.printf("%-13s %9d %9.1f %7d %7d %7d | %9.2f %9.2f %9.2f %9.2f | %9.2f %9.2f%n", name,
+                response.getTotalCount(), response.getTotalCount() / seconds, failed, dropped, skipped,
+                millis(response, 50), millis(response, 99), millis(response, 99.9), response.getMaxValue() / 1000.0,
+                millis(service, 50), millis(service, 99));
+    }
+
+    private static double millis(Histogram histogram, double percentile){
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static long micros(long nanos){
+        return Math.max(1, nanos / 1000);
+    }
+
+    private static final class Entry {
+        private final Histogram response = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final Histogram service = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+    }
+}
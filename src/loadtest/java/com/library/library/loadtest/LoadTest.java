@@ -0,0 +1,114 @@
+package com.library.library.loadtest;
+
+import com.library.library.LibraryApiApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load test. Starts the application on a random port against an in-memory H2 database
+ * filled by the dataset generator, then sends the configured mix of requests at a fixed arrival rate whether or not the
+ * earlier ones have been answered, as independent clients would. A closed loop that waits for each response
+ * would slow down with the server and hide its stalls; here each latency counts from when the request was
+ * due, which corrects for coordinated omission. See {@link LoadTestOptions} for the arguments.
+ */
+public final class LoadTest {
+
+    private LoadTest(){
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext context = start(options);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(executor)
+                    .build();
+            Workload workload = new Workload(URI.create("http://localhost:" + port), options, client);
+            workload.registerGeneratedBooks();
+            System.out.println("Running " + options);
+            LatencyReport report = run(options, workload);
+            report.print(System.out, options.getDuration().toMillis() / 1000d);
+            report.write(options.getOutput());
+            System.out.println("Percentile distributions written to " + options.getOutput().toAbsolutePath());
+        } finally {
+            executor.shutdownNow();
+            context.close();
+        }
+    }
+
+    private static LatencyReport run(LoadTestOptions options, Workload workload) throws InterruptedException {
+        LatencyReport report = new LatencyReport(options.getMix().keySet());
+        Semaphore inFlight = new Semaphore(options.getMaxInFlight());
+        Random random = new Random(options.getSeed());
+        long start = System.nanoTime();
+        long measureFrom = start + options.getWarmup().toNanos();
+        long end = measureFrom + options.getDuration().toNanos();
+
+        for (double due = start; due < end; due += options.nextGapNanos(random)) {
+            long scheduled = (long) due;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = options.nextOperation(random);
+            boolean measured = scheduled >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    report.dropped(operation, scheduled, System.nanoTime());
+                }
+                continue;
+            }
+            long sent = System.nanoTime();
+            workload.send(operation).whenComplete((outcome, error) -> {
+                long done = System.nanoTime();
+                inFlight.release();
+                if (measured) {
+                    report.record(operation, error == null ? outcome : Workload.Outcome.FAILED, scheduled, sent, done);
+                }
+            });
+        }
+        if (!inFlight.tryAcquire(options.getMaxInFlight(), 1, TimeUnit.MINUTES)) {
+            System.out.println("Some requests were still outstanding after a minute and are not reported");
+        }
+        return report;
+    }
+
+    /**
+     * Devtools is on the test classpath and would relaunch {@link #main} without the load test arguments,
+     * so its restart is turned off before the application starts.
+     */
+    private static ConfigurableApplicationContext start(LoadTestOptions options){
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("application.dataset.books", options.getBooks());
+        properties.put("application.dataset.loans", options.getLoans());
+        properties.put("application.dataset.customers", options.getCustomers());
+        properties.put("application.dataset.on-loan-fraction", 0);
+        properties.put("application.dataset.seed", options.getSeed());
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        SpringApplication application = new SpringApplication(LibraryApiApplication.class);
+        application.setAdditionalProfiles("dataset");
+        application.setDefaultProperties(properties);
+        return application.run();
+    }
+}
@@ -0,0 +1,183 @@
+package com.library.library.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Load test settings, given as {@code key=value} arguments:
+ * <pre>
+ *   rate=200            requests per second, sent whatever the response times
+ *   arrival=constant    constant or poisson inter-arrival times
+ *   warmup=10s          traffic sent before measuring
+ *   duration=60s        measured traffic
+ *   books=10000         books generated before the run, all available
+ *   loans=100000        returned loans generated before the run
+ *   customers=1000      distinct customers of the loans
+ *   mix=books.get:40,books.search:20,...   weights of the operations
+ *   max-in-flight=5000  outstanding requests before new ones are dropped (reported as failures)
+ *   seed=42
+ *   output=target/loadtest   directory of the percentile distribution files
+ * </pre>
+ */
+public final class LoadTestOptions {
+
+    private static final String DEFAULT_MIX = "books.create:5,books.get:35,books.search:15,books.update:5,"
+            + "books.patch:5,loans.create:12,loans.return:11,loans.search:12";
+
+    private double rate = 200;
+    private boolean poisson;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(60);
+    private int books = 10_000;
+    private long loans = 100_000;
+    private int customers = 1_000;
+    private Map<Operation, Integer> mix = parseMix(DEFAULT_MIX);
+    private int maxInFlight = 5_000;
+    private long seed = 42;
+    private Path output = Paths.get("target", "loadtest");
+
+    private Operation[] operations;
+    private int[] cumulativeWeights;
+
+    private LoadTestOptions(){
+    }
+
+    public static LoadTestOptions parse(String... args){
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got '" + arg + "'");
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(0, separator)) {
+                case "rate": options.rate = Double.parseDouble(value); break;
+                case "arrival": options.poisson = parseArrival(value); break;
+                case "warmup": options.warmup = DurationStyle.detectAndParse(value); break;
+                case "duration": options.duration = DurationStyle.detectAndParse(value); break;
+                case "books": options.books = Integer.parseInt(value); break;
+                case "loans": options.loans = Long.parseLong(value); break;
+                case "customers": options.customers = Integer.parseInt(value); break;
+                case "mix": options.mix = parseMix(value); break;
+                case "max-in-flight": options.maxInFlight = Integer.parseInt(value); break;
+                case "seed": options.seed = Long.parseLong(value); break;
+                case "output": options.output = Paths.get(value); break;
+                default: throw new IllegalArgumentException("Unknown option '" + arg + "'");
+            }
+        }
+        if (options.rate <= 0 || options.books <= 0 || options.customers <= 0) {
+            throw new IllegalArgumentException("rate, books and customers must be positive");
+        }
+        options.buildMix();
+        return options;
+    }
+
+    /**
+     * Picks the next operation according to the weights of the mix.
+     */
+    public Operation nextOperation(Random random){
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * Nanoseconds until the next request: fixed for constant arrivals, exponentially distributed with the
+     * same mean for Poisson arrivals.
+     */
+    public double nextGapNanos(Random random){
+        double mean = 1_000_000_000d / rate;
+        return poisson ? -Math.log(1 - random.nextDouble()) * mean : mean;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public int getBooks() {
+        return books;
+    }
+
+    public long getLoans() {
+        return loans;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rate=%.0f/s arrival=%s warmup=%s duration=%s books=%d loans=%d customers=%d mix=%s",
+                rate, poisson ? "poisson" : "constant", warmup, duration, books, loans, customers, mix);
+    }
+
+    private void buildMix(){
+        operations = mix.keySet().toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a positive weight");
+        }
+    }
+
+    private static boolean parseArrival(String value){
+        if (!value.equals("constant") && !value.equals("poisson")) {
+            throw new IllegalArgumentException("arrival must be constant or poisson, got '" + value + "'");
+        }
+        return value.equals("poisson");
+    }
+
+    private static Map<Operation, Integer> parseMix(String value){
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in the mix, got '" + entry + "'");
+            }
+            int weight = Integer.parseInt(parts[1]);
+            if (weight > 0) {
+                mix.put(Operation.of(parts[0]), weight);
+            }
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,34 @@
+package com.library.library.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * The requests the load test can send, named as they are given in the {@code mix} option and the report.
+ */
+public enum Operation {
+
+    BOOKS_CREATE("books.create"),
+    BOOKS_GET("books.get"),
+    BOOKS_SEARCH("books.search"),
+    BOOKS_UPDATE("books.update"),
+    BOOKS_PATCH("books.patch"),
+    LOANS_CREATE("loans.create"),
+    LOANS_RETURN("loans.return"),
+    LOANS_SEARCH("loans.search");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static Operation of(String key) {
+        return Arrays.stream(values()).filter(operation -> operation.key.equals(key)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation '" + key + "', expected one of "
+                        + Arrays.toString(Arrays.stream(values()).map(Operation::key).toArray())));
+    }
+}
@@ -0,0 +1,214 @@
+package com.library.library.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.library.api.dto.BookDto;
+import com.library.library.api.dto.LoanDto;
+import com.library.library.api.dto.ReturnedLoanDto;
+import com.library.library.dataset.DatasetGenerator;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Builds and sends the requests of each {@link Operation} and keeps the ids they need: the books known to
+ * exist, starting with the generated books {@code 1..books}, the books free to be loaned and the loans still
+ * open with their book. A loan takes a free book and its return puts the book back, so loans are not
+ * rejected for books already on loan and the mix stays stable over the run.
+ */
+final class Workload {
+
+    private static final String[] WORDS = DatasetGenerator.WORDS;
+    private static final String[] AUTHORS = DatasetGenerator.AUTHORS;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    enum Outcome { OK, FAILED, SKIPPED }
+
+    private final URI base;
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicLongArray bookIds;
+    private final AtomicReferenceArray<String> bookIsbns;
+    private final AtomicInteger bookCount = new AtomicInteger();
+    private final AtomicInteger createdBooks = new AtomicInteger();
+    private final Queue<Integer> freeBooks = new ConcurrentLinkedQueue<>();
+    private final Queue<OpenLoan> openLoans = new ConcurrentLinkedQueue<>();
+
+    Workload(URI base, LoadTestOptions options, HttpClient client){
+        this.base = base;
+        this.options = options;
+        this.client = client;
+        double seconds = options.getWarmup().plus(options.getDuration()).toMillis() / 1000d;
+        int capacity = options.getBooks() + (int) Math.ceil(options.getRate() * seconds * 1.1) + 1;
+        this.bookIds = new AtomicLongArray(capacity);
+        this.bookIsbns = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Registers the generated books, all free: the dataset is generated without open loans.
+     */
+    void registerGeneratedBooks(){
+        List<Integer> books = new ArrayList<>(options.getBooks());
+        for (long id = 1; id <= options.getBooks(); id++) {
+            books.add(addBook(id, DatasetGenerator.isbn(id)));
+        }
+        Collections.shuffle(books, new Random(options.getSeed()));
+        freeBooks.addAll(books);
+    }
+
+    CompletableFuture<Outcome> send(Operation operation){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case BOOKS_CREATE: return createBook(random);
+            case BOOKS_GET: return status(get("/api/books/" + bookIds.get(randomBook(random))));
+            case BOOKS_SEARCH: return status(get("/api/books?title=" + WORDS[random.nextInt(WORDS.length)] + "&size=20"));
+            case BOOKS_UPDATE: return updateBook(random);
+            case BOOKS_PATCH: return status(json("/api/books/" + bookIds.get(randomBook(random)), "PATCH",
+                    new BookDto(null, title(random.nextInt()), null, null)));
+            case LOANS_CREATE: return createLoan(random);
+            case LOANS_RETURN: return returnLoan();
+            case LOANS_SEARCH: return status(get("/api/loans?customer="
+                    + URLEncoder.encode(customer(random), StandardCharsets.UTF_8) + "&size=20"));
+            default: throw new IllegalArgumentException(operation.key());
+        }
+    }
+
+    private CompletableFuture<Outcome> createBook(ThreadLocalRandom random){
+        String isbn = "load-" + createdBooks.incrementAndGet();
+        BookDto book = new BookDto(null, title(random.nextInt()), AUTHORS[random.nextInt(AUTHORS.length)], isbn);
+        return client.sendAsync(json("/api/books", "POST", book), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 201) {
+                        return Outcome.FAILED;
+                    }
+                    freeBooks.offer(addBook(read(response.body(), BookDto.class).getId(), isbn));
+                    return Outcome.OK;
+                });
+    }
+
+    private CompletableFuture<Outcome> updateBook(ThreadLocalRandom random){
+        int book = randomBook(random);
+        BookDto changes = new BookDto(null, title(random.nextInt()), AUTHORS[random.nextInt(AUTHORS.length)],
+                bookIsbns.get(book));
+        return status(json("/api/books/" + bookIds.get(book), "PUT", changes));
+    }
+
+    private CompletableFuture<Outcome> createLoan(ThreadLocalRandom random){
+        Integer book = freeBooks.poll();
+        if (book == null) {
+            return CompletableFuture.completedFuture(Outcome.SKIPPED);
+        }
+        String customer = customer(random);
+        LoanDto loan = LoanDto.builder().isbn(bookIsbns.get(book)).customer(customer)
+                .customerEmail(customer + "@email.com").build();
+        return client.sendAsync(json("/api/loans", "POST", loan), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 201) {
+                        freeBooks.offer(book);
+                        return Outcome.FAILED;
+                    }
+                    openLoans.offer(new OpenLoan(Long.parseLong(response.body().trim()), book));
+                    return Outcome.OK;
+                });
+    }
+
+    private CompletableFuture<Outcome> returnLoan(){
+        OpenLoan loan = openLoans.poll();
+        if (loan == null) {
+            return CompletableFuture.completedFuture(Outcome.SKIPPED);
+        }
+        return client.sendAsync(json("/api/loans/" + loan.id, "PATCH", new ReturnedLoanDto(true)),
+                        HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    freeBooks.offer(loan.book);
+                    return response.statusCode() < 400 ? Outcome.OK : Outcome.FAILED;
+                });
+    }
+
+    private CompletableFuture<Outcome> status(HttpRequest request){
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() < 400 ? Outcome.OK : Outcome.FAILED);
+    }
+
+    private int addBook(Long id, String isbn){
+        int index = bookCount.getAndIncrement();
+        if (index >= bookIds.length()) {
+            throw new IllegalStateException("More books created than the run can send requests for");
+        }
+        bookIsbns.set(index, isbn);
+        bookIds.set(index, id);
+        return index;
+    }
+
+    /**
+     * Only generated books are picked at random: books created during the run may still be in flight.
+     */
+    private int randomBook(ThreadLocalRandom random){
+        return random.nextInt(options.getBooks());
+    }
+
+    private String customer(ThreadLocalRandom random){
+        return DatasetGenerator.customer(random.nextInt(options.getCustomers()));
+    }
+
+    private static String title(int seed){
+        int index = Math.abs(seed % (WORDS.length * WORDS.length));
+        return WORDS[index % WORDS.length] + " " + WORDS[index / WORDS.length];
+    }
+
+    private HttpRequest get(String path){
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private HttpRequest json(String path, String method, Object body){
+        try {
+            return HttpRequest.newBuilder(base.resolve(path)).timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> type){
+        try {
+            return mapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A loan and the index of its book, queued together so a return frees the book that loan took.
+     */
+    private static final class OpenLoan {
+        private final long id;
+        private final int book;
+
+        private OpenLoan(long id, int book){
+            this.id = id;
+            this.book = book;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.library.library.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookImportResultDto {
+
+    private int index;
+    private String isbn;
+    private boolean accepted;
+    private Long id;
+    private String error;
+}
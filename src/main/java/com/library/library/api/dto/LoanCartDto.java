@@ -0,0 +1,25 @@
+package com.library.library.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanCartDto {
+
+    @NotNull
+    private String customer;
+    private String customerEmail;
+    @NotEmpty
+    @Size(max = 100)
+    private List<String> isbns;
+}
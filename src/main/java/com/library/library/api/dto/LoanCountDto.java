@@ -0,0 +1,16 @@
+package com.library.library.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanCountDto {
+
+    private String key;
+    private long loans;
+}
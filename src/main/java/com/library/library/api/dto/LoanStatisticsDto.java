@@ -0,0 +1,21 @@
+package com.library.library.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanStatisticsDto {
+
+    private long totalLoans;
+    private long activeLoans;
+    private long overdueLoans;
+    private long booksLoaned;
+    private LocalDateTime reconciledAt;
+}
@@ -0,0 +1,30 @@
+package com.library.library.api.exceptions;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+
+/**
+ * Tells which database constraint an integrity violation broke, so a service only translates the one it
+ * expects and lets any other failure through unchanged.
+ */
+public final class ConstraintViolations {
+
+    private ConstraintViolations(){
+    }
+
+    /**
+     * @return whether {@code e} was raised by the constraint or unique index named {@code constraint}
+     */
+    public static boolean isViolationOf(DataIntegrityViolationException e, String constraint){
+        String expected = constraint.toUpperCase(Locale.ROOT);
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String name = ((ConstraintViolationException) cause).getConstraintName();
+                return name != null && name.toUpperCase(Locale.ROOT).contains(expected);
+            }
+        }
+        return false;
+    }
+}
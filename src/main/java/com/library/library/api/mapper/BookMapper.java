@@ -0,0 +1,16 @@
+package com.library.library.api.mapper;
+
+import com.library.library.api.dto.BookDto;
+import com.library.library.api.model.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface BookMapper {
+
+    BookDto toDto(Book book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Book toEntity(BookDto dto);
+}
@@ -0,0 +1,22 @@
+package com.library.library.api.mapper;
+
+import com.library.library.api.dto.LoanDto;
+import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LoanListItem;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring", uses = BookMapper.class, injectionStrategy = InjectionStrategy.CONSTRUCTOR)
+public interface LoanMapper {
+
+    @Mapping(target = "bookDto", source = "book")
+    @Mapping(target = "isbn", source = "book.isbn")
+    LoanDto toDto(Loan loan);
+
+    @Mapping(target = "bookDto.id", source = "bookId")
+    @Mapping(target = "bookDto.title", source = "title")
+    @Mapping(target = "bookDto.author", source = "author")
+    @Mapping(target = "bookDto.isbn", source = "isbn")
+    LoanDto toDto(LoanListItem loan);
+}
@@ -1,6 +1,10 @@
 package com.library.library.api.model;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.List;
@@ -11,14 +15,28 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@NaturalIdCache(region = Book.NATURAL_ID_CACHE_REGION)
 public class Book {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public static final String CACHE_REGION = "book";
+    public static final String NATURAL_ID_CACHE_REGION = "book-natural-id";
+    /** Unique index on {@link #isbn}. */
+    public static final String ISBN_INDEX = "ux_book_isbn";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
     private String title;
     private String author;
+    @NaturalId
     private String isbn;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "book")
     private List<Loan> loans;
 }
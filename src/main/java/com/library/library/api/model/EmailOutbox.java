@@ -0,0 +1,48 @@
+package com.library.library.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "email_outbox")
+public class EmailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_outbox_seq")
+    @SequenceGenerator(name = "email_outbox_seq", sequenceName = "email_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    private String sender;
+    private String recipient;
+    private String subject;
+
+    /**
+     * A late loans digest grows with the customer's late loans, so the body is not bounded.
+     */
+    @Lob
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    private EmailStatus status;
+
+    private int attempts;
+
+    /**
+     * When a pending message becomes due, or when the lease of a message being sent expires.
+     */
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,8 @@
+package com.library.library.api.model;
+
+public enum EmailStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
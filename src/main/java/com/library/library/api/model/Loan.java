@@ -15,6 +15,16 @@ import java.time.LocalDate;
 @Entity
 public class Loan {
 
+    /**
+     * Days a book can stay on loan; a loan is late from the start of the day this many days after its loan date.
+     */
+    public static final long LOAN_DAYS = 4L;
+
+    /**
+     * Unique constraint on {@link #activeBookId}: at most one open loan per book.
+     */
+    public static final String ACTIVE_BOOK_CONSTRAINT = "uk_loan_active_book";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -27,5 +37,22 @@ public class Loan {
     @JoinColumn(name = "id_book")
     private Book book;
     private LocalDate loanDate;
-    private Boolean returned;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean returned = false;
+
+    /**
+     * Id of the book while this loan is open, {@code null} once returned. Unique, so the database rejects
+     * a second open loan for the same book.
+     */
+    @Column(name = "active_book_id", unique = true)
+    private Long activeBookId;
+
+    /**
+     * Set once the overdue digest of this loan is in the email outbox.
+     */
+    @Builder.Default
+    @Column(nullable = false)
+    private Boolean overdueNotified = false;
 }
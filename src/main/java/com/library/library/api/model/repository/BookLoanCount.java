@@ -0,0 +1,8 @@
+package com.library.library.api.model.repository;
+
+public interface BookLoanCount {
+
+    Long getBookId();
+
+    Long getTotal();
+}
@@ -0,0 +1,27 @@
+package com.library.library.api.model.repository;
+
+import com.library.library.api.model.Book;
+
+import java.util.Optional;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Loads a book by its ISBN natural id, answered from the second-level cache when the book is there.
+     */
+    Optional<Book> findByIsbn(String isbn);
+
+    /**
+     * Sets the non-null {@code title} and {@code author} of a book and bumps its version with a single UPDATE,
+     * without loading the book. When {@code version} is not null the update only applies to that version.
+     * The book's second-level cache entry is left to the caller.
+     *
+     * @return the number of updated rows, 0 when no book matched the id (and version)
+     */
+    int patch(Long id, Long version, String title, String author);
+
+    /**
+     * Drops a book from the second-level cache, by id and by ISBN.
+     */
+    void evictFromCache(Long id, String isbn);
+}
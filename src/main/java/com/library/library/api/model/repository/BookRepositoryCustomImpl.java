@@ -0,0 +1,76 @@
+package com.library.library.api.model.repository;
+
+import com.library.library.api.model.Book;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.Optional;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Book> findByIsbn(String isbn) {
+        if (isbn == null) {
+            return Optional.empty();
+        }
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Book.class).loadOptional(isbn);
+    }
+
+    /**
+     * A single UPDATE that only carries the changed columns and bumps the version itself, since bulk statements
+     * bypass Hibernate's optimistic locking. It is sent as native SQL with an empty synchronized query space:
+     * for a JPQL or Criteria bulk update Hibernate drops the whole book region, while here nothing is
+     * invalidated and the caller evicts just the patched book once the update has committed.
+     */
+    @Override
+    @Transactional
+    public int patch(Long id, Long version, String title, String author) {
+        StringBuilder sql = new StringBuilder("update book set version = version + 1");
+        if (title != null) {
+            sql.append(", title = :title");
+        }
+        if (author != null) {
+            sql.append(", author = :author");
+        }
+        sql.append(" where id = :id");
+        if (version != null) {
+            sql.append(" and version = :version");
+        }
+
+        Query update = entityManager.createNativeQuery(sql.toString()).setParameter("id", id);
+        if (title != null) {
+            update.setParameter("title", title);
+        }
+        if (author != null) {
+            update.setParameter("author", author);
+        }
+        if (version != null) {
+            update.setParameter("version", version);
+        }
+        update.unwrap(NativeQuery.class).addSynchronizedQuerySpace("");
+        return update.executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public void evictFromCache(Long id, String isbn) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        session.getFactory().getCache().evictEntityData(Book.class, id);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Book.class);
+        if (isbn != null && persister.hasNaturalIdCache()) {
+            NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+            naturalIds.evict(naturalIds.generateCacheKey(new Object[]{isbn}, persister, session));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.library.library.api.model.repository;
+
+import com.library.library.api.model.EmailOutbox;
+import com.library.library.api.model.EmailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The outbox is a work queue claimed with updates, so all of it, reads included, stays on the primary.
+ */
+@Transactional
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Pending messages that are due, plus messages whose sending lease expired (the worker died mid-send).
+     */
+    @Query("select e.id from EmailOutbox e where e.status in :statuses and e.nextAttemptAt <= :now order by e.nextAttemptAt, e.id")
+    List<Long> findDueIds(@Param("statuses") List<EmailStatus> statuses, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutbox e set e.status = :sending, e.nextAttemptAt = :leaseUntil, e.attempts = e.attempts + 1 " +
+            "where e.id = :id and e.status in :statuses and e.nextAttemptAt <= :now")
+    int claim(@Param("id") Long id, @Param("statuses") List<EmailStatus> statuses, @Param("sending") EmailStatus sending,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    long countByStatus(EmailStatus status);
+}
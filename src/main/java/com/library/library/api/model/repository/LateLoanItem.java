@@ -0,0 +1,16 @@
+package com.library.library.api.model.repository;
+
+import java.time.LocalDate;
+
+public interface LateLoanItem {
+
+    Long getId();
+
+    String getCustomer();
+
+    String getCustomerEmail();
+
+    String getTitle();
+
+    LocalDate getLoanDate();
+}
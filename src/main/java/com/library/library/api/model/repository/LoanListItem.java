@@ -0,0 +1,18 @@
+package com.library.library.api.model.repository;
+
+public interface LoanListItem {
+
+    Long getId();
+
+    String getCustomer();
+
+    String getCustomerEmail();
+
+    Long getBookId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    String getIsbn();
+}
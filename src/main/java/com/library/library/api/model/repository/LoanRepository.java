@@ -5,24 +5,115 @@ import com.library.library.api.model.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
 
 
     @Query("select case when ( count(l.id) > 0 ) then true else false end from Loan l " +
-            "where l.book = :book and (l.returned is null or l.returned is false) ")
+            "where l.book = :book and l.returned = false ")
     boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-    Page<Loan> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageRequest);
+    @Query(value = "select l.id as id, l.customer as customer, l.customerEmail as customerEmail, b.id as bookId, b.title as title, " +
+            "b.author as author, b.isbn as isbn " +
+            "from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer",
+            countQuery = "select count(l.id) from Loan l join l.book b where b.isbn = :isbn or l.customer = :customer")
+    Page<LoanListItem> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageRequest);
+
+    @Query(value = "select l.id as id, l.customer as customer, l.customerEmail as customerEmail, b.id as bookId, b.title as title, " +
+            "b.author as author, b.isbn as isbn " +
+            "from Loan l join l.book b where l.book = :book",
+            countQuery = "select count(l.id) from Loan l where l.book = :book")
+    Page<LoanListItem> findByBook(@Param("book") Book book, Pageable pageable);
+
+    /**
+     * Open loans feed the in-memory availability and statistics, so this and the other read-write
+     * {@code @Transactional} reads below always run on the primary, never on a lagging replica.
+     */
+    @Transactional
+    @Query("select l.id as id, l.activeBookId as bookId, l.customer as customer, l.loanDate as loanDate, " +
+            "l.overdueNotified as overdueNotified from Loan l " +
+            "where l.activeBookId is not null and l.id > :afterId order by l.id")
+    Slice<OpenLoan> findOpenLoans(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Transactional
+    boolean existsByActiveBookId(Long bookId);
+
+    @Transactional
+    @Query("select l.id as id, l.activeBookId as bookId, l.customer as customer, l.loanDate as loanDate, " +
+            "l.overdueNotified as overdueNotified from Loan l " +
+            "where l.activeBookId is not null and l.id in :ids")
+    List<OpenLoan> findOpenLoansByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Returns every open loan of {@code ids} in one statement; loans already returned are left untouched.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Loan l set l.returned = true, l.activeBookId = null where l.id in :ids and l.activeBookId is not null")
+    int returnLoans(@Param("ids") Collection<Long> ids);
 
-    Page<Loan> findByBook(Book book, Pageable pageable);
+    /**
+     * Open loans made on or before {@code lastDueLoanDate} whose overdue digest was not written yet.
+     */
+    @Transactional
+    @Query("select l.id as id, l.activeBookId as bookId, l.customer as customer, l.loanDate as loanDate, " +
+            "l.overdueNotified as overdueNotified from Loan l " +
+            "where l.activeBookId is not null and l.overdueNotified = false and l.loanDate <= :lastDueLoanDate " +
+            "and l.id > :afterId order by l.id")
+    Slice<OpenLoan> findUnnotifiedOverdueLoans(@Param("lastDueLoanDate") LocalDate lastDueLoanDate,
+                                               @Param("afterId") Long afterId, Pageable pageable);
 
-    @Query("select l from Loan l where l.loanDate <= :days and (l.returned is null or l.returned is false) ")
+    /**
+     * Locks the open loans of {@code ids} that were not notified yet. A concurrent claim of the same loans
+     * waits for this transaction and no longer finds them once it has marked them.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l.id from Loan l where l.id in :ids and l.activeBookId is not null and l.overdueNotified = false")
+    List<Long> lockUnnotifiedOpenLoans(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Loan l set l.overdueNotified = true where l.id in :ids")
+    int markOverdueNotified(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Query("select l.book.id as bookId, count(l.id) as total from Loan l group by l.book.id")
+    List<BookLoanCount> countLoansPerBook();
+
+    @Query("select l from Loan l where l.loanDate <= :days and l.returned = false ")
     List<Loan> findbyLoanDateLessThanAndNotReturned(@Param("days") LocalDate treeDaysAgo);
+
+    @Query("select l.id as id, l.customer as customer, l.customerEmail as customerEmail, b.title as title, " +
+            "l.loanDate as loanDate from Loan l join l.book b " +
+            "where l.loanDate <= :days and l.returned = false and l.customerEmail is not null " +
+            "and (l.customerEmail > :afterEmail or (l.customerEmail = :afterEmail and l.id > :afterId)) " +
+            "order by l.customerEmail, l.id")
+    Slice<LateLoanItem> findLateLoanItems(@Param("days") LocalDate treeDaysAgo, @Param("afterEmail") String afterEmail,
+                                          @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select l.id as id, l.customer as customer, l.customerEmail as customerEmail, b.title as title, " +
+            "l.loanDate as loanDate from Loan l join l.book b " +
+            "where l.id in :ids and l.returned = false and l.customerEmail is not null order by l.customerEmail, l.id")
+    List<LateLoanItem> findLateLoanItemsByIds(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select l from Loan l join fetch l.book order by l.id")
+    Stream<Loan> streamAll();
 }
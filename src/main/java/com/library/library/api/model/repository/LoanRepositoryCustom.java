@@ -0,0 +1,23 @@
+package com.library.library.api.model.repository;
+
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDate;
+
+/**
+ * Keyset scrolls over loans in (loanDate, id) order, loans without a date first. A null {@code afterId} starts
+ * from the beginning; a null {@code afterDate} with an id continues among the undated loans.
+ */
+public interface LoanRepositoryCustom {
+
+    /**
+     * Loans of the book with {@code isbn} or of {@code customer}; every loan when both are null.
+     */
+    Slice<Loan> findSliceByBookIsbnOrCustomer(String isbn, String customer, LocalDate afterDate, Long afterId,
+                                              Pageable pageable);
+
+    Slice<Loan> findSliceByBook(Book book, LocalDate afterDate, Long afterId, Pageable pageable);
+}
@@ -0,0 +1,94 @@
+package com.library.library.api.model.repository;
+
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The scroll queries are built per call so that only the filters actually given end up in the SQL: a
+ * catch-all {@code (:x is null or col = :x)} keeps the planner from using the customer and book indexes.
+ */
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Loan> findSliceByBookIsbnOrCustomer(String isbn, String customer, LocalDate afterDate,
+                                                     Long afterId, Pageable pageable) {
+        return findSlice((cb, loan, book) -> {
+            List<Predicate> matches = new ArrayList<>(2);
+            if (isbn != null) {
+                matches.add(cb.equal(book.get("isbn"), isbn));
+            }
+            if (customer != null) {
+                matches.add(cb.equal(loan.get("customer"), customer));
+            }
+            return matches.isEmpty() ? null : cb.or(matches.toArray(new Predicate[0]));
+        }, afterDate, afterId, pageable);
+    }
+
+    @Override
+    public Slice<Loan> findSliceByBook(Book book, LocalDate afterDate, Long afterId, Pageable pageable) {
+        return findSlice((cb, loan, joined) -> cb.equal(loan.get("book"), book), afterDate, afterId, pageable);
+    }
+
+    private Slice<Loan> findSlice(Filter filter, LocalDate afterDate, Long afterId, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Loan> query = cb.createQuery(Loan.class);
+        Root<Loan> loan = query.from(Loan.class);
+        @SuppressWarnings("unchecked")
+        Join<Loan, Book> book = (Join<Loan, Book>) loan.<Loan, Book>fetch("book");
+
+        List<Predicate> where = new ArrayList<>(2);
+        Predicate matches = filter.toPredicate(cb, loan, book);
+        if (matches != null) {
+            where.add(matches);
+        }
+        if (afterId != null) {
+            where.add(after(cb, loan, afterDate, afterId));
+        }
+        Path<LocalDate> loanDate = loan.get("loanDate");
+        query.select(loan).where(where.toArray(new Predicate[0])).orderBy(
+                cb.asc(cb.selectCase().when(cb.isNull(loanDate), 0).otherwise(1)),
+                cb.asc(loanDate),
+                cb.asc(loan.get("id")));
+
+        List<Loan> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    /**
+     * Loans after the (afterDate, afterId) key. Undated loans sort first, so past an undated key every dated
+     * loan still follows, and past a dated key no undated loan does.
+     */
+    private static Predicate after(CriteriaBuilder cb, Root<Loan> loan, LocalDate afterDate, Long afterId) {
+        Path<LocalDate> loanDate = loan.get("loanDate");
+        Path<Long> id = loan.get("id");
+        if (afterDate == null) {
+            return cb.or(cb.and(cb.isNull(loanDate), cb.greaterThan(id, afterId)), cb.isNotNull(loanDate));
+        }
+        return cb.or(cb.greaterThan(loanDate, afterDate),
+                cb.and(cb.equal(loanDate, afterDate), cb.greaterThan(id, afterId)));
+    }
+
+    private interface Filter {
+        Predicate toPredicate(CriteriaBuilder cb, Root<Loan> loan, Join<Loan, Book> book);
+    }
+}
@@ -0,0 +1,16 @@
+package com.library.library.api.model.repository;
+
+import java.time.LocalDate;
+
+public interface OpenLoan {
+
+    Long getId();
+
+    Long getBookId();
+
+    String getCustomer();
+
+    LocalDate getLoanDate();
+
+    Boolean getOverdueNotified();
+}
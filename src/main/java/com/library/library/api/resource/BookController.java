@@ -1,7 +1,11 @@
 package com.library.library.api.resource;
 
 import com.library.library.api.dto.BookDto;
+import com.library.library.api.dto.BookImportResultDto;
+import com.library.library.api.dto.CursorPageDto;
 import com.library.library.api.dto.LoanDto;
+import com.library.library.api.mapper.BookMapper;
+import com.library.library.api.mapper.LoanMapper;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
 import com.library.library.api.service.BookService;
@@ -10,18 +14,35 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -30,30 +51,93 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BookController {
 
+    static final String NDJSON = "application/x-ndjson";
+    private static final int IMPORT_CHUNK_SIZE = 500;
+
     @Autowired
     private BookService service;
     @Autowired
     private LoanService loanService;
     @Autowired
-    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    @Autowired
+    private LoanMapper loanMapper;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${application.books.cache-max-age:0s}")
+    private Duration cacheMaxAge;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Create a book")
     public BookDto create(@RequestBody @Valid BookDto dto){
         log.info("Create a book for isbn: {}", dto.getIsbn());
-        Book entity = modelMapper.map(dto, Book.class);
+        Book entity = bookMapper.toEntity(dto);
 
         entity = service.save(entity);
 
-        return modelMapper.map(entity, BookDto.class);
+        return bookMapper.toDto(entity);
     }
 
+    @PostMapping(value = "import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation("Imports a list of books, reporting which ones were accepted")
+    public List<BookImportResultDto> importBooks(@RequestBody List<BookDto> dtos){
+        log.info("Importing {} books", dtos.size());
+        List<BookImportResultDto> results = new ArrayList<>(dtos.size());
+        for (int offset = 0; offset < dtos.size(); offset += IMPORT_CHUNK_SIZE) {
+            List<BookDto> chunk = dtos.subList(offset, Math.min(dtos.size(), offset + IMPORT_CHUNK_SIZE));
+            results.addAll(importChunk(chunk, offset));
+        }
+        return results;
+    }
+
+    @PostMapping(value = "import", consumes = NDJSON)
+    @ApiOperation("Imports books sent as newline-delimited JSON, reporting which ones were accepted")
+    public List<BookImportResultDto> importBooksStream(HttpServletRequest request) throws IOException {
+        List<BookImportResultDto> results = new ArrayList<>();
+        List<BookDto> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int index = 0;
+        int chunkOffset = 0;
+
+        BufferedReader reader = request.getReader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                chunk.add(objectMapper.readValue(line, BookDto.class));
+            } catch (JsonProcessingException e) {
+                chunk.add(null);
+            }
+            index++;
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                results.addAll(importChunk(chunk, chunkOffset));
+                chunk.clear();
+                chunkOffset = index;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(importChunk(chunk, chunkOffset));
+        }
+        log.info("Imported {} books from stream", index);
+        return results;
+    }
+
+    /**
+     * A matching If-None-Match is answered with 304 from the cached version, without loading the book.
+     */
     @GetMapping("{id}")
     @ApiOperation("Obtains a book details by id")
-    public BookDto get(@PathVariable Long id){
+    public ResponseEntity<BookDto> get(@PathVariable Long id, WebRequest request){
+        Optional<Long> version = service.getVersion(id);
+        if (version.isPresent() && request.checkNotModified(ETags.book(id, version.get()))) {
+            return notModified(ETags.book(id, version.get()));
+        }
 
-        return service.getById(id).map(book -> modelMapper.map(book, BookDto.class))
+        return service.getById(id)
+                .map(book -> ResponseEntity.ok().eTag(ETags.book(book)).cacheControl(cacheControl()).body(bookMapper.toDto(book)))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
     }
@@ -77,20 +161,67 @@ public class BookController {
             book.setAuthor(dto.getAuthor());
             book.setTitle(dto.getTitle());
             book = service.update(book);
-            return modelMapper.map(book, BookDto.class);
+            return bookMapper.toDto(book);
         }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * Changes the title and/or author in a single UPDATE. With an If-Match ETag the update only applies
+     * to that version and a stale tag answers 412; the response carries the new ETag when it is known.
+     */
+    @PatchMapping("{id}")
+    @ApiOperation("Partially updates a book")
+    public ResponseEntity<Void> patch(@PathVariable Long id, @RequestBody BookDto dto,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        if (dto.getTitle() == null && dto.getAuthor() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nothing to update");
+        }
+        Long version = ETags.ifMatchVersion(id, ifMatch);
+        Book changes = Book.builder().title(dto.getTitle()).author(dto.getAuthor()).build();
+        if (!service.patch(id, version, changes)) {
+            if (version != null && service.getVersion(id).isPresent()) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+            }
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.NO_CONTENT);
+        if (version != null) {
+            response.eTag(ETags.book(id, version + 1));
+        }
+        return response.build();
+    }
+
     @GetMapping
     @ApiOperation("Find books by params")
-    public Page<BookDto> find (BookDto dto, Pageable pageRequest){
-        Book filter = modelMapper.map(dto, Book.class);
+    public ResponseEntity<Page<BookDto>> find (BookDto dto, Pageable pageRequest, WebRequest request){
+        Book filter = bookMapper.toEntity(dto);
         Page<Book> result = service.find(filter,pageRequest);
-        List<BookDto> list = result.stream().map(book -> modelMapper.map(book, BookDto.class))
+        String eTag = ETags.page(result);
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        List<BookDto> list = result.stream().map(bookMapper::toDto)
                 .collect(Collectors.toList());
 
-        return new PageImpl<>(list,pageRequest, result.getTotalElements());
+        return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl())
+                .body(new PageImpl<>(list,pageRequest, result.getTotalElements()));
+
+    }
 
+    @GetMapping(value = "export", produces = NDJSON)
+    @ApiOperation("Exports every book as newline-delimited JSON")
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        try (SequenceWriter writer = objectMapper.writerFor(BookDto.class)
+                .withRootValueSeparator("\n").writeValues(response.getOutputStream())) {
+            service.exportAll(book -> {
+                try {
+                    writer.write(bookMapper.toDto(book));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 
     @GetMapping("{id}/loans")
@@ -99,16 +230,73 @@ public class BookController {
         Book book = service.getById(id).orElseThrow(() ->
                         new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found for passed id"));
 
-        Page<Loan> result = loanService.getLoansByBook(book, pageable);
-        List<LoanDto> loanDtoList = result.getContent().stream().map(loan -> {
-            BookDto bookDto = modelMapper.map(loan.getBook(), BookDto.class);
-            LoanDto loanDto = modelMapper.map(loan, LoanDto.class);
-            loanDto.setBookDto(bookDto);
-            return loanDto;
-        }).collect(Collectors.toList());
+        return loanService.getLoansByBook(book, pageable).map(loanMapper::toDto);
+    }
+
+    @GetMapping("scroll")
+    @ApiOperation("Scrolls through the books ordered by id, without counting them")
+    public CursorPageDto<BookDto> scroll(@RequestParam(required = false) String after,
+                                         @RequestParam(defaultValue = "20") int size){
+        Slice<Book> result = service.scroll(Cursors.bookId(after), Cursors.size(size));
 
-        return new PageImpl<LoanDto>(loanDtoList,pageable, result.getTotalElements());
+        return CursorPageDto.<BookDto>builder()
+                .content(result.stream().map(bookMapper::toDto).collect(Collectors.toList()))
+                .size(result.getNumberOfElements())
+                .next(Cursors.nextBook(result))
+                .build();
     }
 
+    @GetMapping("{id}/loans/scroll")
+    @ApiOperation("Scrolls through the loans of a book ordered by loan date, without counting them")
+    public CursorPageDto<LoanDto> scrollLoansByBook(@PathVariable Long id,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(defaultValue = "20") int size){
+        Book book = service.getById(id).orElseThrow(() ->
+                        new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found for passed id"));
+
+        Cursors.LoanKey key = Cursors.loanKey(after);
+        Slice<Loan> result = loanService.scrollByBook(book, key.loanDate, key.id, Cursors.size(size));
+
+        return CursorPageDto.<LoanDto>builder()
+                .content(result.stream().map(loanMapper::toDto).collect(Collectors.toList()))
+                .size(result.getNumberOfElements())
+                .next(Cursors.nextLoan(result))
+                .build();
+    }
 
+    private <T> ResponseEntity<T> notModified(String eTag){
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl()).build();
+    }
+
+    private CacheControl cacheControl(){
+        return CacheControl.maxAge(cacheMaxAge).mustRevalidate();
+    }
+
+    /**
+     * Imports one chunk in its own transaction. Unparseable lines arrive as null and are rejected here,
+     * indexes are shifted by {@code offset} so they refer to the position in the whole request.
+     */
+    private List<BookImportResultDto> importChunk(List<BookDto> chunk, int offset){
+        List<Book> books = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        List<BookImportResultDto> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            BookDto dto = chunk.get(i);
+            if (dto == null) {
+                results.add(BookImportResultDto.builder().index(offset + i).error("Invalid JSON").build());
+            } else {
+                books.add(bookMapper.toEntity(dto));
+                positions.add(offset + i);
+                results.add(null);
+            }
+        }
+
+        List<BookImportResultDto> imported = books.isEmpty() ? new ArrayList<>() : service.importBooks(books);
+        for (int i = 0; i < imported.size(); i++) {
+            BookImportResultDto result = imported.get(i);
+            result.setIndex(positions.get(i));
+            results.set(positions.get(i) - offset, result);
+        }
+        return results;
+    }
 }
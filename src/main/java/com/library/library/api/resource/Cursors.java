@@ -0,0 +1,91 @@
+package com.library.library.api.resource;
+
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursors for the scroll endpoints: books are ordered by id, loans by (loanDate, id) with the
+ * undated loans first; their cursor leaves the date empty.
+ */
+final class Cursors {
+
+    static final int MAX_SIZE = 1000;
+
+    private static final String SEPARATOR = "_";
+
+    private Cursors(){
+    }
+
+    static int size(int requested){
+        return Math.max(1, Math.min(requested, MAX_SIZE));
+    }
+
+    static String nextBook(Slice<Book> slice){
+        if (!slice.hasNext()) {
+            return null;
+        }
+        Book last = slice.getContent().get(slice.getNumberOfElements() - 1);
+        return encode(String.valueOf(last.getId()));
+    }
+
+    static String nextLoan(Slice<Loan> slice){
+        if (!slice.hasNext()) {
+            return null;
+        }
+        Loan last = slice.getContent().get(slice.getNumberOfElements() - 1);
+        String loanDate = last.getLoanDate() == null ? "" : last.getLoanDate().toString();
+        return encode(loanDate + SEPARATOR + last.getId());
+    }
+
+    static Long bookId(String cursor){
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(decode(cursor));
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+
+    static LoanKey loanKey(String cursor){
+        if (cursor == null || cursor.isEmpty()) {
+            return new LoanKey(null, null);
+        }
+        try {
+            String[] parts = decode(cursor).split(SEPARATOR);
+            return new LoanKey(parts[0].isEmpty() ? null : LocalDate.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw invalid();
+        }
+    }
+
+    private static String encode(String value){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor){
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static ResponseStatusException invalid(){
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+
+    static class LoanKey {
+        final LocalDate loanDate;
+        final Long id;
+
+        LoanKey(LocalDate loanDate, Long id){
+            this.loanDate = loanDate;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.library.library.api.resource;
+
+import com.library.library.api.model.Book;
+import org.springframework.data.domain.Page;
+
+/**
+ * Strong ETags for book representations, derived from the entity version: a book's tag changes exactly
+ * when the book is updated, and a page's tag when its total, position or any of its books change.
+ */
+final class ETags {
+
+    private ETags(){
+    }
+
+    static String book(Long id, Long version){
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * The version an If-Match header asks for: null for a missing header or "*", and -1 for a tag that
+     * cannot belong to book {@code id}, a version no update will ever match.
+     */
+    static Long ifMatchVersion(Long id, String ifMatch){
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        String tag = ifMatch.trim();
+        if (!tag.startsWith(prefix) || !tag.endsWith("\"") || tag.length() <= prefix.length() + 1) {
+            return -1L;
+        }
+        try {
+            return Long.valueOf(tag.substring(prefix.length(), tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    static String book(Book book){
+        return book(book.getId(), book.getVersion());
+    }
+
+    static String page(Page<Book> page){
+        long hash = 1125899906842597L;
+        hash = 31 * hash + page.getTotalElements();
+        hash = 31 * hash + page.getNumber();
+        hash = 31 * hash + page.getSize();
+        hash = 31 * hash + page.getSort().hashCode();
+        for (Book book : page) {
+            hash = 31 * hash + book.getId();
+            hash = 31 * hash + (book.getVersion() == null ? 0 : book.getVersion());
+        }
+        return "\"p" + Long.toHexString(hash) + "\"";
+    }
+}
@@ -1,26 +1,42 @@
 package com.library.library.api.resource;
 
-import com.library.library.api.dto.BookDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.library.library.api.dto.CursorPageDto;
+import com.library.library.api.dto.LoanCartDto;
+import com.library.library.api.dto.LoanCheckoutResultDto;
+import com.library.library.api.dto.LoanCountDto;
 import com.library.library.api.dto.LoanDto;
 import com.library.library.api.dto.LoanFilterDto;
+import com.library.library.api.dto.LoanStatisticsDto;
+import com.library.library.api.dto.ReturnLoansDto;
+import com.library.library.api.dto.ReturnLoansResultDto;
 import com.library.library.api.dto.ReturnedLoanDto;
+import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.mapper.LoanMapper;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
 import com.library.library.api.service.BookService;
 import com.library.library.api.service.LoanService;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,7 +48,9 @@ public class LoanController {
     @Autowired
     private BookService bookService;
     @Autowired
-    private ModelMapper modelMapper;
+    private LoanMapper loanMapper;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -42,6 +60,7 @@ public class LoanController {
 
         Loan entity = Loan.builder().book(book)
                                     .customer(dto.getCustomer())
+                                    .customerEmail(dto.getCustomerEmail())
                                     .loanDate(LocalDate.now())
                                     .build();
 
@@ -50,28 +69,112 @@ public class LoanController {
         return entity.getId();
     }
 
+    /**
+     * Checks out every book of the cart for one customer, with the same availability rules as a single
+     * loan. Each book is loaned on its own, so an unavailable book does not undo the others.
+     */
+    @PostMapping("checkout")
+    public List<LoanCheckoutResultDto> checkout(@RequestBody @Valid LoanCartDto cart){
+        Map<String, Book> books = bookService.getBooksByIsbn(new HashSet<>(cart.getIsbns())).stream()
+                .collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+        LocalDate today = LocalDate.now();
+
+        List<LoanCheckoutResultDto> results = new ArrayList<>(cart.getIsbns().size());
+        for (int i = 0; i < cart.getIsbns().size(); i++) {
+            String isbn = cart.getIsbns().get(i);
+            LoanCheckoutResultDto result = LoanCheckoutResultDto.builder().index(i).isbn(isbn).build();
+            Book book = books.get(isbn);
+            if (book == null) {
+                result.setError("Book not found for passed isbn");
+            } else {
+                try {
+                    Loan loan = loanService.save(Loan.builder().book(book)
+                            .customer(cart.getCustomer())
+                            .customerEmail(cart.getCustomerEmail())
+                            .loanDate(today)
+                            .build());
+                    result.setAccepted(true);
+                    result.setId(loan.getId());
+                } catch (BusinessException e) {
+                    result.setError(e.getMessage());
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @PostMapping("returns")
+    public ReturnLoansResultDto returnBooks(@RequestBody @Valid ReturnLoansDto dto){
+        List<Long> returned = loanService.returnLoans(new HashSet<>(dto.getIds()));
+        Set<Long> returnedIds = new HashSet<>(returned);
+        List<Long> notOpen = dto.getIds().stream().filter(id -> !returnedIds.contains(id))
+                .distinct().collect(Collectors.toList());
+        return ReturnLoansResultDto.builder().returned(returned).notOpen(notOpen).build();
+    }
+
+    /**
+     * Returning a loan is a single UPDATE; returning one that is already returned is a no-op.
+     */
     @PatchMapping("{id}")
     public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDto dto){
+        if (Boolean.TRUE.equals(dto.getReturned())) {
+            if (!loanService.returnLoan(id) && !loanService.getById(id).isPresent()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found for passed id");
+            }
+            return;
+        }
         Loan loan = loanService.getById(id).orElseThrow(() ->  new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found for passed id"));
         loan.setReturned(dto.getReturned());
         loanService.update(loan);
     }
 
+    @GetMapping("statistics")
+    public LoanStatisticsDto statistics(){
+        return loanService.getStatistics();
+    }
+
+    @GetMapping("statistics/books/{bookId}")
+    public LoanCountDto bookStatistics(@PathVariable Long bookId){
+        return LoanCountDto.builder().key(bookId.toString()).loans(loanService.countLoansOfBook(bookId)).build();
+    }
+
+    @GetMapping("statistics/customers/{customer}")
+    public LoanCountDto customerStatistics(@PathVariable String customer){
+        return LoanCountDto.builder().key(customer).loans(loanService.countActiveLoansOf(customer)).build();
+    }
+
     @GetMapping
     public Page<LoanDto> find(LoanFilterDto filter, Pageable pageRequest){
-        Page<Loan> loans = loanService.find(filter, pageRequest);
-        List<LoanDto> loanDtoList = loans.getContent().stream()
-                .map(loan -> {
-                    BookDto bookDto = modelMapper.map(loan.getBook(), BookDto.class);
-                    LoanDto loanDto = modelMapper.map(loan, LoanDto.class);
-                    loanDto.setBookDto(bookDto);
-                    return loanDto;
-                })
-                .collect(Collectors.toList());
-
-        return new PageImpl<>(loanDtoList, pageRequest, loans.getTotalElements());
+        return loanService.find(filter, pageRequest).map(loanMapper::toDto);
     }
 
+    @GetMapping("scroll")
+    public CursorPageDto<LoanDto> scroll(LoanFilterDto filter,
+                                         @RequestParam(required = false) String after,
+                                         @RequestParam(defaultValue = "20") int size){
+        Cursors.LoanKey key = Cursors.loanKey(after);
+        Slice<Loan> loans = loanService.scroll(filter, key.loanDate, key.id, Cursors.size(size));
 
+        return CursorPageDto.<LoanDto>builder()
+                .content(loans.stream().map(loanMapper::toDto).collect(Collectors.toList()))
+                .size(loans.getNumberOfElements())
+                .next(Cursors.nextLoan(loans))
+                .build();
+    }
 
+    @GetMapping(value = "export", produces = BookController.NDJSON)
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType(BookController.NDJSON);
+        try (SequenceWriter writer = objectMapper.writerFor(LoanDto.class)
+                .withRootValueSeparator("\n").writeValues(response.getOutputStream())) {
+            loanService.exportAll(loan -> {
+                try {
+                    writer.write(loanMapper.toDto(loan));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
 }
@@ -1,24 +1,40 @@
 package com.library.library.api.service;
 
 
+import com.library.library.api.dto.BookImportResultDto;
 import com.library.library.api.model.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
     Book save(Book book);
 
+    List<BookImportResultDto> importBooks(List<Book> books);
+
     Optional<Book> getById(Long id);
 
     void delete(Book book);
 
     Book update(Book book);
 
+    boolean patch(Long id, Long version, Book changes);
+
     Page<Book> find(Book book, Pageable pageable);
 
+    Slice<Book> scroll(Long afterId, int size);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    List<Book> getBooksByIsbn(Collection<String> isbns);
+
+    Optional<Long> getVersion(Long id);
+
+    void exportAll(Consumer<Book> consumer);
 }
@@ -1,7 +1,11 @@
 package com.library.library.api.service;
 
+import com.library.library.api.service.mail.LateLoanDigest;
+
 import java.util.List;
 
 public interface EmailService {
     void sendMails(String message, List<String> listEmails);
+
+    void sendLateLoanDigests(String message, List<LateLoanDigest> digests);
 }
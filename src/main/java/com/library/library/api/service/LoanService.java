@@ -1,13 +1,20 @@
 package com.library.library.api.service;
 
 import com.library.library.api.dto.LoanFilterDto;
+import com.library.library.api.dto.LoanStatisticsDto;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LateLoanItem;
+import com.library.library.api.model.repository.LoanListItem;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface LoanService {
     Loan save(Loan loan);
@@ -16,9 +23,44 @@ public interface LoanService {
 
     Loan update(Loan loan);
 
-    Page<Loan> find(LoanFilterDto filter, Pageable pageble);
+    boolean returnLoan(Long id);
 
-    Page<Loan> getLoansByBook(Book book, Pageable pageable);
+    List<Long> returnLoans(Collection<Long> loanIds);
+
+    Page<LoanListItem> find(LoanFilterDto filter, Pageable pageble);
+
+    Page<LoanListItem> getLoansByBook(Book book, Pageable pageable);
+
+    Slice<Loan> scroll(LoanFilterDto filter, LocalDate afterLoanDate, Long afterId, int size);
+
+    Slice<Loan> scrollByBook(Book book, LocalDate afterLoanDate, Long afterId, int size);
 
     List<Loan> getAllLateLoans();
+
+    Slice<LateLoanItem> getLateLoanItems(String afterEmail, Long afterId, int size);
+
+    /**
+     * Marks the open loans of {@code loanIds} that were not notified yet as notified and returns their
+     * digest items. Call it in the transaction that writes the digests, so the mark commits with them.
+     */
+    List<LateLoanItem> claimOverdueLoans(Collection<Long> loanIds);
+
+    List<Long> pollOverdueLoans(int max);
+
+    /**
+     * Queues the overdue open loans that were not notified yet, whichever instance made them.
+     *
+     * @return how many loans were queued
+     */
+    int queueUnnotifiedOverdueLoans();
+
+    LoanStatisticsDto getStatistics();
+
+    long countLoansOfBook(Long bookId);
+
+    long countActiveLoansOf(String customer);
+
+    void reconcileStatistics();
+
+    void exportAll(Consumer<Loan> consumer);
 }
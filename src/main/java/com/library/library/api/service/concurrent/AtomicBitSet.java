@@ -0,0 +1,109 @@
+package com.library.library.api.service.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe set of non-negative longs backed by one bit per value. Lookups are lock-free; updates to
+ * different bits proceed in parallel and only block while the array grows to fit a larger value.
+ */
+public class AtomicBitSet {
+
+    private static final int INITIAL_WORDS = 1 << 10;
+
+    private final ReadWriteLock resize = new ReentrantReadWriteLock();
+    private volatile AtomicLongArray words = new AtomicLongArray(INITIAL_WORDS);
+
+    public boolean contains(long value) {
+        int index = wordIndex(value);
+        AtomicLongArray current = words;
+        return index < current.length() && (current.get(index) & bit(value)) != 0;
+    }
+
+    /**
+     * @return {@code true} when the value was not in the set yet.
+     */
+    public boolean add(long value) {
+        int index = wordIndex(value);
+        long mask = bit(value);
+        while (true) {
+            resize.readLock().lock();
+            try {
+                AtomicLongArray current = words;
+                if (index < current.length()) {
+                    long previous = current.getAndAccumulate(index, mask, (word, m) -> word | m);
+                    return (previous & mask) == 0;
+                }
+            } finally {
+                resize.readLock().unlock();
+            }
+            grow(index);
+        }
+    }
+
+    /**
+     * @return {@code true} when the value was in the set.
+     */
+    public boolean remove(long value) {
+        int index = wordIndex(value);
+        resize.readLock().lock();
+        try {
+            if (index >= words.length()) {
+                return false;
+            }
+            long mask = bit(value);
+            long previous = words.getAndAccumulate(index, mask, (word, m) -> word & ~m);
+            return (previous & mask) != 0;
+        } finally {
+            resize.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        resize.writeLock().lock();
+        try {
+            words = new AtomicLongArray(INITIAL_WORDS);
+        } finally {
+            resize.writeLock().unlock();
+        }
+    }
+
+    public int cardinality() {
+        AtomicLongArray current = words;
+        int count = 0;
+        for (int i = 0; i < current.length(); i++) {
+            count += Long.bitCount(current.get(i));
+        }
+        return count;
+    }
+
+    private void grow(int index) {
+        resize.writeLock().lock();
+        try {
+            AtomicLongArray current = words;
+            if (index < current.length()) {
+                return;
+            }
+            int length = (int) Math.max(index + 1L, Math.min(Integer.MAX_VALUE - 8L, current.length() * 2L));
+            AtomicLongArray grown = new AtomicLongArray(length);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            words = grown;
+        } finally {
+            resize.writeLock().unlock();
+        }
+    }
+
+    private static int wordIndex(long value) {
+        if (value < 0 || (value >>> 6) > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+        return (int) (value >>> 6);
+    }
+
+    private static long bit(long value) {
+        return 1L << value;
+    }
+}
@@ -0,0 +1,52 @@
+package com.library.library.api.service.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by key hash. Work on the same key is serialized, work on different keys
+ * only contends when two keys fall on the same stripe, and memory stays constant however many keys exist.
+ */
+public class StripedLocks {
+
+    private final Lock[] stripes;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Lock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Lock get(long key) {
+        return stripes[index(key)];
+    }
+
+    /**
+     * The distinct stripes of {@code keys} in stripe order. Callers holding several stripes must take
+     * them in this order, so two of them can never wait on each other.
+     */
+    public List<Lock> getAll(Iterable<Long> keys) {
+        boolean[] used = new boolean[stripes.length];
+        for (long key : keys) {
+            used[index(key)] = true;
+        }
+        List<Lock> locks = new ArrayList<>();
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                locks.add(stripes[i]);
+            }
+        }
+        return locks;
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -1,55 +1,207 @@
 package com.library.library.api.service.implementation;
 
+import com.library.library.api.dto.BookImportResultDto;
 import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.exceptions.ConstraintViolations;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.repository.BookRepository;
 import com.library.library.api.service.BookService;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.library.library.api.service.search.BookSearchIndex;
+import com.library.library.config.CacheConfig;
+import com.library.library.config.EvictBookCaches;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
-import java.util.Optional;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Slf4j
 public class BookServiceImpl implements BookService {
 
+    private static final int INDEX_LOAD_CHUNK_SIZE = 1_000;
+
     private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private CacheManager cacheManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    public BookServiceImpl(BookRepository repository){
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex, CacheManager cacheManager){
         this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Indexes every book, then lets searches use the index. Skipped at startup when
+     * {@code application.dataset.skip-warmup} is set, as {@link com.library.library.dataset.DatasetCommand} does.
+     */
+    @EventListener(value = ApplicationReadyEvent.class, condition = "!@environment.getProperty('application.dataset.skip-warmup', T(Boolean), false)")
+    public void buildSearchIndex() {
+        Long lastId = 0L;
+        Slice<Book> chunk;
+        do {
+            chunk = repository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, INDEX_LOAD_CHUNK_SIZE));
+            chunk.forEach(searchIndex::index);
+            if (chunk.hasContent()) {
+                lastId = chunk.getContent().get(chunk.getNumberOfElements() - 1).getId();
+            }
+        } while (chunk.hasNext());
+        searchIndex.markReady();
+        log.info("Book search index built with {} books", searchIndex.size());
     }
 
+    /**
+     * The ISBN pre-check is answered from a cache that can be stale, for instance after an insert on another
+     * instance, so a duplicate caught by the unique index is reported the same way.
+     */
     @Override
+    @EvictBookCaches
     public Book save(Book book) {
         if(repository.existsByIsbn(book.getIsbn())) throw new BusinessException("Isbn já cadastrado.");
-        return repository.save(book);
+        Book saved;
+        try {
+            saved = repository.save(book);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolationOf(e, Book.ISBN_INDEX)) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            throw e;
+        }
+        searchIndex.index(saved);
+        return saved;
     }
 
+    /**
+     * Checks every ISBN of the batch with a single query and inserts the accepted books in one transaction,
+     * so Hibernate can send them as JDBC batches. Rejected items are reported, not thrown. Only once the batch
+     * has committed are the saved books indexed and their ISBNs evicted from the existence cache, so a rollback
+     * leaves neither behind and the rest of the cache survives the import.
+     */
     @Override
+    @Transactional
+    public List<BookImportResultDto> importBooks(List<Book> books) {
+        Set<String> isbns = books.stream().map(Book::getIsbn).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> existing = isbns.isEmpty() ? Collections.emptySet() : new HashSet<>(repository.findExistingIsbns(isbns));
+
+        List<BookImportResultDto> results = new ArrayList<>(books.size());
+        List<Book> accepted = new ArrayList<>(books.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            BookImportResultDto result = BookImportResultDto.builder().index(i).isbn(book.getIsbn()).build();
+            if (book.getTitle() == null || book.getAuthor() == null || book.getIsbn() == null) {
+                result.setError("Title, author and isbn are required");
+            } else if (existing.contains(book.getIsbn())) {
+                result.setError("Isbn já cadastrado.");
+            } else if (!seen.add(book.getIsbn())) {
+                result.setError("Isbn duplicado no lote.");
+            } else {
+                result.setAccepted(true);
+                accepted.add(book);
+            }
+            results.add(result);
+        }
+
+        List<Book> saved = repository.saveAll(accepted);
+        Iterator<Book> ids = saved.iterator();
+        for (BookImportResultDto result : results) {
+            if (result.isAccepted()) {
+                result.setId(ids.next().getId());
+            }
+        }
+        afterCommit(() -> {
+            saved.forEach(searchIndex::index);
+            Cache isbnExists = cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS);
+            if (isbnExists != null) {
+                saved.forEach(book -> isbnExists.evict(book.getIsbn()));
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Runs on the primary, like the ISBN lookups below: the book read here is what updates, deletes and
+     * checkouts act on, so it must not lag behind the last write.
+     */
+    @Override
+    @Transactional
     public Optional<Book> getById(Long id) {
         return repository.findById(id);
     }
 
+    /**
+     * The removal leaves a lock entry for the book in the second-level cache, so the book is evicted by id
+     * and ISBN once the delete has committed.
+     */
     @Override
+    @EvictBookCaches
     public void delete(Book book) {
         if (book == null || book.getId() == null){
             throw new IllegalArgumentException("Book id cant be null");
         }
         repository.delete(book);
+        repository.evictFromCache(book.getId(), book.getIsbn());
+        searchIndex.remove(book.getId());
     }
 
     @Override
+    @EvictBookCaches
     public Book update(Book book) {
         if (book == null || book.getId() == null){
             throw new IllegalArgumentException("Book id cant be null");
         }
-        return repository.save(book);
+        Book updated = repository.save(book);
+        searchIndex.index(updated);
+        return updated;
+    }
+
+    /**
+     * Updates the non-null title and author of {@code changes} with a single UPDATE. Once it has committed,
+     * only this book's second-level cache entry is evicted; its natural id entry and the ISBN existence cache
+     * are left alone, the ISBN cannot be patched. The search index re-tokenizes the fields sent, and reads the
+     * book only when it was not indexed yet and a field is missing.
+     *
+     * @return false when no book has the id, or it is no longer at {@code version}
+     */
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.BOOK_VERSIONS, key = "#id")
+    public boolean patch(Long id, Long version, Book changes) {
+        if (repository.patch(id, version, changes.getTitle(), changes.getAuthor()) == 0) {
+            return false;
+        }
+        afterCommit(() -> {
+            repository.evictFromCache(id, null);
+            if (!searchIndex.update(id, changes.getTitle(), changes.getAuthor())) {
+                repository.findById(id).ifPresent(searchIndex::index);
+            }
+        });
+        return true;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book book, Pageable pageableRequest) {
+        if (isIndexedSearch(book, pageableRequest)) {
+            return findIndexed(book, pageableRequest);
+        }
         Example<Book> example = Example.of(book, ExampleMatcher.matching()
                                                             .withIgnoreCase()
                                                             .withIgnoreNullValues()
@@ -59,7 +211,86 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> scroll(Long afterId, int size) {
+        return repository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size));
+    }
+
+    @Override
+    @Transactional
     public Optional<Book> getBookByIsbn(String isbn) {
         return repository.findByIsbn(isbn);
     }
+
+    @Override
+    @Transactional
+    public List<Book> getBooksByIsbn(Collection<String> isbns) {
+        return isbns.isEmpty() ? Collections.emptyList() : repository.findByIsbnIn(isbns);
+    }
+
+    @Override
+    public Optional<Long> getVersion(Long id) {
+        return Optional.ofNullable(repository.findVersionById(id));
+    }
+
+    /**
+     * Streams every book to the consumer inside a read-only transaction, detaching each one once consumed
+     * so the persistence context stays small whatever the table size.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(Consumer<Book> consumer) {
+        try (Stream<Book> books = repository.streamAll()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    /**
+     * Runs {@code action} once the current transaction has committed, or right away outside of one.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Title/author-only searches without an explicit sort are answered by the search index once it is built;
+     * anything else (isbn or id filters, custom sorting, a search while the index is still loading) falls back
+     * to the query by example.
+     */
+    private boolean isIndexedSearch(Book book, Pageable pageable) {
+        return searchIndex.isReady() && book.getId() == null && book.getIsbn() == null && pageable.getSort().isUnsorted()
+                && (StringUtils.hasText(book.getTitle()) || StringUtils.hasText(book.getAuthor()));
+    }
+
+    private Page<Book> findIndexed(Book book, Pageable pageable) {
+        long[] ids = searchIndex.search(book.getTitle(), book.getAuthor());
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(loadOrdered(ids, 0, ids.length), pageable, ids.length);
+        }
+        int from = (int) Math.min(pageable.getOffset(), ids.length);
+        int to = Math.min(from + pageable.getPageSize(), ids.length);
+
+        return new PageImpl<>(loadOrdered(ids, from, to), pageable, ids.length);
+    }
+
+    private List<Book> loadOrdered(long[] ids, int from, int to) {
+        if (from == to) {
+            return new ArrayList<>();
+        }
+        List<Book> books = repository.findAllById(Arrays.stream(ids, from, to).boxed().collect(Collectors.toList()));
+        books.sort(Comparator.comparing(Book::getId));
+        return books;
+    }
 }
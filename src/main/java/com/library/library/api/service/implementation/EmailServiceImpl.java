@@ -1,33 +1,73 @@
 package com.library.library.api.service.implementation;
 
+import com.library.library.api.model.EmailOutbox;
+import com.library.library.api.model.EmailStatus;
+import com.library.library.api.model.repository.EmailOutboxRepository;
 import com.library.library.api.service.EmailService;
+import com.library.library.api.service.mail.LateLoanDigest;
+import com.library.library.api.service.mail.MailTemplates;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+/**
+ * Writes the messages to the email outbox; {@link com.library.library.api.service.schedules.EmailOutboxDispatcher}
+ * delivers them.
+ */
 @Service
 public class EmailServiceImpl implements EmailService {
 
+    private static final String LATE_LOANS_SUBJECT = "Livro com emprestimo atrasado";
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
     @Autowired
-    private JavaMailSender mailSender;
+    private MailTemplates mailTemplates;
 
     @Value("${application.mail.default-remetente}")
     private String remetent;
 
     @Override
+    @Transactional
     public void sendMails(String message, List<String> listEmails) {
-        String[] mails = listEmails.toArray(new String[listEmails.size()]);
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> outbox = listEmails.stream()
+                .map(email -> pending(email, message, now))
+                .collect(Collectors.toList());
+
+        outboxRepository.saveAll(outbox);
+    }
+
+    @Override
+    @Transactional
+    public void sendLateLoanDigests(String message, List<LateLoanDigest> digests) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, String> shared = Collections.singletonMap("message", message);
+        List<EmailOutbox> outbox = digests.stream()
+                .map(digest -> pending(digest.getEmail(),
+                        mailTemplates.render(MailTemplates.LATE_LOANS, digest, shared), now))
+                .collect(Collectors.toList());
 
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-        mailMessage.setFrom(remetent);
-        mailMessage.setSubject("Livro com emprestimo atrasado");
-        mailMessage.setText(message);
-        mailMessage.setTo(mails);
+        outboxRepository.saveAll(outbox);
+    }
 
-        mailSender.send(mailMessage);
+    private EmailOutbox pending(String recipient, String body, LocalDateTime now) {
+        return EmailOutbox.builder()
+                .sender(remetent)
+                .recipient(recipient)
+                .subject(LATE_LOANS_SUBJECT)
+                .body(body)
+                .status(EmailStatus.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
     }
 }
@@ -1,62 +1,381 @@
 package com.library.library.api.service.implementation;
 
 import com.library.library.api.dto.LoanFilterDto;
+import com.library.library.api.dto.LoanStatisticsDto;
 import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.exceptions.ConstraintViolations;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LateLoanItem;
+import com.library.library.api.model.repository.LoanListItem;
 import com.library.library.api.model.repository.LoanRepository;
+import com.library.library.api.model.repository.OpenLoan;
 import com.library.library.api.service.LoanService;
+import com.library.library.api.service.concurrent.AtomicBitSet;
+import com.library.library.api.service.concurrent.StripedLocks;
+import com.library.library.api.service.overdue.DueLoanQueue;
+import com.library.library.api.service.statistics.LoanStatistics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Slf4j
 public class LoanServiceImpl implements LoanService {
 
+    private static final int BOOK_LOCK_STRIPES = 256;
+    private static final int OPEN_LOANS_LOAD_CHUNK_SIZE = 1_000;
+
     private LoanRepository repository;
 
+    private final StripedLocks bookLocks = new StripedLocks(BOOK_LOCK_STRIPES);
+    private final AtomicBitSet loanedBooks = new AtomicBitSet();
+    private final DueLoanQueue dueLoans = new DueLoanQueue();
+    private final LoanStatistics statistics = new LoanStatistics();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public LoanServiceImpl(LoanRepository repository) {
         this.repository = repository;
     }
 
+    /**
+     * Loads the loaned books, the due instants of open loans and the statistics. Every loan not notified yet
+     * is queued, including the ones that came due while the application was down; the ones already notified
+     * are not, so they are not notified twice. Skipped at startup when
+     * {@code application.dataset.skip-warmup} is set, as {@link com.library.library.dataset.DatasetCommand} does.
+     */
+    @EventListener(value = ApplicationReadyEvent.class, condition = "!@environment.getProperty('application.dataset.skip-warmup', T(Boolean), false)")
+    public void loadOpenLoans() {
+        long now = System.currentTimeMillis();
+        LoanStatistics rebuilt = countLoansPerBook();
+        forEachOpenLoan(loan -> {
+            loanedBooks.add(loan.getBookId());
+            long due = dueAt(loan.getLoanDate());
+            if (!Boolean.TRUE.equals(loan.getOverdueNotified())) {
+                dueLoans.schedule(loan.getId(), loan.getBookId(), due);
+            }
+            rebuilt.addOpenLoan(loan.getId(), loan.getCustomer(), due <= now);
+        });
+        statistics.replace(rebuilt);
+        log.info("Availability index loaded with {} loaned books, {} loans waiting to be notified",
+                loanedBooks.cardinality(), dueLoans.size());
+    }
+
+    @Override
+    public void reconcileStatistics() {
+        long now = System.currentTimeMillis();
+        LoanStatistics rebuilt = countLoansPerBook();
+        forEachOpenLoan(loan -> rebuilt.addOpenLoan(loan.getId(), loan.getCustomer(), dueAt(loan.getLoanDate()) <= now));
+        statistics.replace(rebuilt);
+        log.info("Loan statistics reconciled: {} loans, {} active, {} overdue", statistics.totalLoans(),
+                statistics.activeLoans(), statistics.overdueLoans());
+    }
+
+    private LoanStatistics countLoansPerBook() {
+        LoanStatistics rebuilt = new LoanStatistics();
+        repository.countLoansPerBook().forEach(count -> rebuilt.addBookLoans(count.getBookId(), count.getTotal()));
+        return rebuilt;
+    }
+
+    private void forEachOpenLoan(Consumer<OpenLoan> consumer) {
+        forEachOpenLoan((lastId, page) -> repository.findOpenLoans(lastId, page), consumer);
+    }
+
+    private void forEachOpenLoan(BiFunction<Long, Pageable, Slice<OpenLoan>> query, Consumer<OpenLoan> consumer) {
+        Long lastId = 0L;
+        Slice<OpenLoan> chunk;
+        do {
+            chunk = query.apply(lastId, PageRequest.of(0, OPEN_LOANS_LOAD_CHUNK_SIZE));
+            for (OpenLoan loan : chunk) {
+                consumer.accept(loan);
+                lastId = loan.getId();
+            }
+        } while (chunk.hasNext());
+    }
+
+    /**
+     * Checkouts of the same book are serialized by a striped lock, so other books proceed in parallel.
+     * The unique {@code active_book_id} column is the source of truth: a book missing from the in-memory
+     * set goes straight to the insert, which the constraint rejects if the book is on loan after all
+     * (for example through another instance). A book in the set may have been returned elsewhere, so it
+     * is only refused once the database confirms the open loan. Any other integrity violation, such as a
+     * book deleted in the meantime, is rethrown as is and leaves the book available.
+     */
     @Override
     public Loan save(Loan loan) {
-        if (repository.existsByBookAndNotReturned(loan.getBook())){
+        Long bookId = loan.getBook().getId();
+        Lock lock = bookLocks.get(bookId);
+        lock.lock();
+        try {
+            if (loanedBooks.contains(bookId)){
+                if (repository.existsByActiveBookId(bookId)) {
+                    throw new BusinessException("Book already Loaned");
+                }
+                loanedBooks.remove(bookId);
+            }
+            loan.setActiveBookId(bookId);
+            Loan saved = repository.saveAndFlush(loan);
+            loanedBooks.add(bookId);
+            dueLoans.schedule(saved.getId(), bookId, dueAt(saved.getLoanDate()));
+            statistics.loanCreated(bookId, saved.getCustomer());
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            if (!ConstraintViolations.isViolationOf(e, Loan.ACTIVE_BOOK_CONSTRAINT)) {
+                throw e;
+            }
+            loanedBooks.add(bookId);
             throw new BusinessException("Book already Loaned");
+        } finally {
+            lock.unlock();
         }
-        return repository.save(loan);
     }
 
+    /**
+     * A loan is late from the start of the day {@link Loan#LOAN_DAYS} after it was made, the same rule
+     * {@link #getAllLateLoans()} applies.
+     */
+    private static long dueAt(LocalDate loanDate) {
+        return loanDate.plusDays(Loan.LOAN_DAYS).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Runs on the primary: the loan read here is what updates and returns act on.
+     */
     @Override
+    @Transactional
     public Optional<Loan> getById(Long id) {
         return repository.findById(id);
     }
 
+    /**
+     * A returned loan cannot be opened again: that would skip the checkout of the book, which may be on
+     * loan to someone else by now. A new loan goes through {@link #save(Loan)}.
+     */
     @Override
     public Loan update(Loan loan) {
+        if (!Boolean.TRUE.equals(loan.getReturned())) {
+            if (loan.getActiveBookId() == null) {
+                throw new BusinessException("Loan already returned");
+            }
+            return repository.save(loan);
+        }
+        Long bookId = loan.getBook().getId();
+        Lock lock = bookLocks.get(bookId);
+        lock.lock();
+        try {
+            Long loanId = loan.getId();
+            boolean wasActive = loan.getActiveBookId() != null;
+            loan.setActiveBookId(null);
+            Loan saved = repository.saveAndFlush(loan);
+            if (wasActive) {
+                loanedBooks.remove(bookId);
+                dueLoans.cancel(loanId);
+                statistics.loanReturned(loanId, loan.getCustomer());
+            }
+            return saved;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        return repository.save(loan);
+    /**
+     * Returns one loan with a single UPDATE instead of loading and merging the entity. Only the projection
+     * of the open loan is read, for the in-memory state; the row count tells whether this call returned it.
+     *
+     * @return false when the loan does not exist or was already returned
+     */
+    @Override
+    public boolean returnLoan(Long id) {
+        List<OpenLoan> open = repository.findOpenLoansByIds(Collections.singletonList(id));
+        if (open.isEmpty()) {
+            return false;
+        }
+        OpenLoan loan = open.get(0);
+        Lock lock = bookLocks.get(loan.getBookId());
+        lock.lock();
+        try {
+            if (repository.returnLoans(Collections.singletonList(id)) == 0) {
+                return false;
+            }
+            released(loan);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Returns the open loans among {@code loanIds} with a single UPDATE. The stripes of every book involved
+     * are held while the open loans are read again and updated, so a checkout or single return of the same
+     * books cannot interleave; unknown and already returned loans are left out of the result.
+     */
     @Override
-    public Page<Loan> find(LoanFilterDto filter, Pageable pageble) {
+    public List<Long> returnLoans(Collection<Long> loanIds) {
+        List<OpenLoan> candidates = loanIds.isEmpty() ? Collections.emptyList() : repository.findOpenLoansByIds(loanIds);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Lock> locks = bookLocks.getAll(candidates.stream().map(OpenLoan::getBookId).collect(Collectors.toList()));
+        locks.forEach(Lock::lock);
+        try {
+            List<OpenLoan> open = repository.findOpenLoansByIds(
+                    candidates.stream().map(OpenLoan::getId).collect(Collectors.toList()));
+            if (open.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Long> returned = open.stream().map(OpenLoan::getId).collect(Collectors.toList());
+            repository.returnLoans(returned);
+            open.forEach(this::released);
+            return returned;
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    private void released(OpenLoan loan) {
+        loanedBooks.remove(loan.getBookId());
+        dueLoans.cancel(loan.getId());
+        statistics.loanReturned(loan.getId(), loan.getCustomer());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanListItem> find(LoanFilterDto filter, Pageable pageble) {
         return repository.findByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageble);
     }
 
     @Override
-    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public Page<LoanListItem> getLoansByBook(Book book, Pageable pageable) {
         return repository.findByBook(book, pageable);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> scroll(LoanFilterDto filter, LocalDate afterLoanDate, Long afterId, int size) {
+        return repository.findSliceByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(),
+                afterLoanDate, afterId, PageRequest.of(0, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> scrollByBook(Book book, LocalDate afterLoanDate, Long afterId, int size) {
+        return repository.findSliceByBook(book, afterLoanDate, afterId, PageRequest.of(0, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Loan> getAllLateLoans() {
-        final Long loanDays = 4L;
-        LocalDate treeDaysAgo = LocalDate.now().minusDays(loanDays);
+        LocalDate treeDaysAgo = LocalDate.now().minusDays(Loan.LOAN_DAYS);
 
         return repository.findbyLoanDateLessThanAndNotReturned(treeDaysAgo);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<LateLoanItem> getLateLoanItems(String afterEmail, Long afterId, int size) {
+        LocalDate treeDaysAgo = LocalDate.now().minusDays(Loan.LOAN_DAYS);
+
+        return repository.findLateLoanItems(treeDaysAgo, afterEmail, afterId, PageRequest.of(0, size));
+    }
+
+    /**
+     * The claimed loans are locked before they are marked, so instances polling the same loans notify each
+     * of them once.
+     */
+    @Override
+    @Transactional
+    public List<LateLoanItem> claimOverdueLoans(Collection<Long> loanIds) {
+        List<Long> claimed = repository.lockUnnotifiedOpenLoans(loanIds);
+        if (claimed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        repository.markOverdueNotified(claimed);
+        return repository.findLateLoanItemsByIds(claimed);
+    }
+
+    @Override
+    public List<Long> pollOverdueLoans(int max) {
+        List<Long> loanIds = new ArrayList<>();
+        dueLoans.pollDue(System.currentTimeMillis(), max, (loanId, bookId) -> {
+            statistics.loanOverdue(loanId);
+            loanIds.add(loanId);
+        });
+        return loanIds;
+    }
+
+    /**
+     * Catch-up for the loans the in-memory queue does not hold: the ones made on another instance, and the
+     * ones polled by a tick whose transaction rolled back. A loan queued twice is claimed once.
+     */
+    @Override
+    public int queueUnnotifiedOverdueLoans() {
+        LocalDate lastDueLoanDate = LocalDate.now().minusDays(Loan.LOAN_DAYS);
+        AtomicInteger queued = new AtomicInteger();
+        forEachOpenLoan((lastId, page) -> repository.findUnnotifiedOverdueLoans(lastDueLoanDate, lastId, page), loan -> {
+            dueLoans.schedule(loan.getId(), loan.getBookId(), dueAt(loan.getLoanDate()));
+            queued.incrementAndGet();
+        });
+        return queued.get();
+    }
+
+    @Override
+    public LoanStatisticsDto getStatistics() {
+        return LoanStatisticsDto.builder()
+                .totalLoans(statistics.totalLoans())
+                .activeLoans(statistics.activeLoans())
+                .overdueLoans(statistics.overdueLoans())
+                .booksLoaned(statistics.booksLoaned())
+                .reconciledAt(statistics.reconciledAt())
+                .build();
+    }
+
+    @Override
+    public long countLoansOfBook(Long bookId) {
+        return statistics.loansOfBook(bookId);
+    }
+
+    @Override
+    public long countActiveLoansOf(String customer) {
+        return statistics.activeLoansOf(customer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(Consumer<Loan> consumer) {
+        try (Stream<Loan> loans = repository.streamAll()) {
+            loans.forEach(loan -> {
+                consumer.accept(loan);
+                entityManager.detach(loan);
+                entityManager.detach(loan.getBook());
+            });
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package com.library.library.api.service.mail;
+
+import com.library.library.api.model.repository.LateLoanItem;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every overdue loan of one customer email, rendered as a single message.
+ */
+@Getter
+public class LateLoanDigest {
+
+    private final String email;
+    private final String customer;
+    private final List<LateBook> books = new ArrayList<>();
+
+    public LateLoanDigest(String email, String customer) {
+        this.email = email;
+        this.customer = customer;
+    }
+
+    public void add(String title, LocalDate loanDate) {
+        books.add(new LateBook(title, loanDate));
+    }
+
+    /**
+     * Appends the books of {@code other}, a digest for the same email.
+     */
+    public void addAll(LateLoanDigest other) {
+        books.addAll(other.books);
+    }
+
+    /**
+     * One digest per email, for items already ordered by customer email.
+     */
+    public static List<LateLoanDigest> groupByEmail(Iterable<LateLoanItem> items) {
+        List<LateLoanDigest> digests = new ArrayList<>();
+        LateLoanDigest current = null;
+        for (LateLoanItem item : items) {
+            if (current == null || !current.getEmail().equals(item.getCustomerEmail())) {
+                current = new LateLoanDigest(item.getCustomerEmail(), item.getCustomer());
+                digests.add(current);
+            }
+            current.add(item.getTitle(), item.getLoanDate());
+        }
+        return digests;
+    }
+
+    @Getter
+    public static class LateBook {
+        private final String title;
+        private final LocalDate loanDate;
+
+        LateBook(String title, LocalDate loanDate) {
+            this.title = title;
+            this.loanDate = loanDate;
+        }
+    }
+}
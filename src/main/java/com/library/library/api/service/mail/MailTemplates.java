@@ -0,0 +1,58 @@
+package com.library.library.api.service.mail;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plain-text mail templates under classpath:templates/mail. Templates are compiled once (the known ones at
+ * startup) and the compiled form is reused for every message rendered afterwards.
+ */
+@Component
+public class MailTemplates {
+
+    public static final String LATE_LOANS = "late-loans";
+
+    private static final String LOCATION = "templates/mail/%s.mustache";
+
+    private final Mustache.Compiler compiler = Mustache.compiler().escapeHTML(false).defaultValue("");
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void precompile() {
+        template(LATE_LOANS);
+    }
+
+    /**
+     * Renders {@code context}; names it does not resolve are looked up in {@code parentContext}.
+     */
+    public String render(String name, Object context, Object parentContext) {
+        StringWriter writer = new StringWriter(512);
+        template(name).execute(context, parentContext, writer);
+        return writer.toString();
+    }
+
+    private Template template(String name) {
+        return templates.computeIfAbsent(name, this::compile);
+    }
+
+    private Template compile(String name) {
+        ClassPathResource resource = new ClassPathResource(String.format(LOCATION, name));
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            return compiler.compile(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Mail template not found: " + name, e);
+        }
+    }
+}
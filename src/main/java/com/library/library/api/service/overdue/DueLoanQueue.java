@@ -0,0 +1,118 @@
+package com.library.library.api.service.overdue;
+
+import com.library.library.api.service.concurrent.AtomicBitSet;
+
+import java.util.Arrays;
+
+/**
+ * Open loans ordered by due instant, kept as a binary min-heap over parallel primitive arrays: three longs
+ * per loan and no per-entry objects. Returned loans are cancelled lazily and skipped when their due instant
+ * is reached.
+ */
+public class DueLoanQueue {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] dueAt = new long[INITIAL_CAPACITY];
+    private long[] loanIds = new long[INITIAL_CAPACITY];
+    private long[] bookIds = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private final AtomicBitSet cancelled = new AtomicBitSet();
+
+    @FunctionalInterface
+    public interface DueLoanConsumer {
+        void accept(long loanId, long bookId);
+    }
+
+    public synchronized void schedule(long loanId, long bookId, long dueAtMillis) {
+        if (size == dueAt.length) {
+            int capacity = size << 1;
+            dueAt = Arrays.copyOf(dueAt, capacity);
+            loanIds = Arrays.copyOf(loanIds, capacity);
+            bookIds = Arrays.copyOf(bookIds, capacity);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (dueAt[parent] <= dueAtMillis) {
+                break;
+            }
+            move(parent, index);
+            index = parent;
+        }
+        set(index, dueAtMillis, loanId, bookId);
+    }
+
+    /**
+     * Safe to call whether or not the loan is still queued: the in-memory statistics cannot tell, since a
+     * reconcile counts overdue loans that were not polled yet. The mark of a loan already handed out by
+     * {@link #pollDue} is never cleared, which costs one bit as loan ids are not reused.
+     */
+    public void cancel(long loanId) {
+        cancelled.add(loanId);
+    }
+
+    /**
+     * Removes up to {@code max} loans due at or before {@code nowMillis}, earliest first, handing the
+     * ones that were not cancelled to {@code consumer}.
+     *
+     * @return how many loans were handed to the consumer.
+     */
+    public synchronized int pollDue(long nowMillis, int max, DueLoanConsumer consumer) {
+        int fired = 0;
+        while (size > 0 && fired < max && dueAt[0] <= nowMillis) {
+            long loanId = loanIds[0];
+            long bookId = bookIds[0];
+            removeHead();
+            if (!cancelled.remove(loanId)) {
+                consumer.accept(loanId, bookId);
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        cancelled.clear();
+    }
+
+    private void removeHead() {
+        int last = --size;
+        if (last == 0) {
+            return;
+        }
+        long due = dueAt[last];
+        long loanId = loanIds[last];
+        long bookId = bookIds[last];
+        int index = 0;
+        int half = last >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            if (child + 1 < last && dueAt[child + 1] < dueAt[child]) {
+                child++;
+            }
+            if (due <= dueAt[child]) {
+                break;
+            }
+            move(child, index);
+            index = child;
+        }
+        set(index, due, loanId, bookId);
+    }
+
+    private void move(int from, int to) {
+        set(to, dueAt[from], loanIds[from], bookIds[from]);
+    }
+
+    private void set(int index, long due, long loanId, long bookId) {
+        dueAt[index] = due;
+        loanIds[index] = loanId;
+        bookIds[index] = bookId;
+    }
+}
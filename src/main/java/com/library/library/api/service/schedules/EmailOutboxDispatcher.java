@@ -0,0 +1,177 @@
+package com.library.library.api.service.schedules;
+
+import com.library.library.api.model.EmailOutbox;
+import com.library.library.api.model.EmailStatus;
+import com.library.library.api.model.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the email outbox with a fixed pool of sender workers.
+ *
+ * A worker claims a message with a conditional update that also sets a lease, so two workers (or two
+ * instances) never send the same message and a message left behind by a dead worker is picked up again
+ * once its lease expires. Failed sends are retried with exponential backoff until max-attempts.
+ */
+@Service
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private static final List<EmailStatus> CLAIMABLE = Arrays.asList(EmailStatus.PENDING, EmailStatus.SENDING);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Value("${application.mail.outbox.workers:4}")
+    private int workers;
+
+    @Value("${application.mail.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${application.mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${application.mail.outbox.backoff:30s}")
+    private Duration backoff;
+
+    @Value("${application.mail.outbox.lease:5m}")
+    private Duration lease;
+
+    @Autowired
+    private EmailOutboxRepository repository;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Sends every due message, one batch at a time, and returns how many were delivered.
+     */
+    @Scheduled(fixedDelayString = "${application.mail.outbox.poll-interval:5000}")
+    public int dispatch() {
+        long start = System.nanoTime();
+        int sent = 0;
+        int failed = 0;
+
+        List<Long> ids;
+        do {
+            ids = repository.findDueIds(CLAIMABLE, LocalDateTime.now(), PageRequest.of(0, batchSize));
+
+            List<Future<Boolean>> results = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                results.add(executor.submit(() -> deliver(id)));
+            }
+            for (Future<Boolean> result : results) {
+                Boolean delivered = await(result);
+                if (Boolean.TRUE.equals(delivered)) {
+                    sent++;
+                } else if (Boolean.FALSE.equals(delivered)) {
+                    failed++;
+                }
+            }
+        } while (ids.size() == batchSize && !Thread.currentThread().isInterrupted());
+
+        if (sent + failed > 0) {
+            meterRegistry.counter("library.mail.sent").increment(sent);
+            meterRegistry.counter("library.mail.failed").increment(failed);
+            long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.info("Email outbox: {} sent, {} failed in {} ms ({} messages/s)", sent, failed, elapsed,
+                    sent * 1000L / elapsed);
+        }
+        return sent;
+    }
+
+    /**
+     * @return true when sent, false when the attempt failed, null when another worker owns the message
+     */
+    private Boolean deliver(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.claim(id, CLAIMABLE, EmailStatus.SENDING, now, now.plus(lease)) == 0) {
+            return null;
+        }
+        EmailOutbox email = repository.findById(id).orElse(null);
+        if (email == null) {
+            return null;
+        }
+
+        try {
+            SimpleMailMessage mailMessage = new SimpleMailMessage();
+            mailMessage.setFrom(email.getSender());
+            mailMessage.setTo(email.getRecipient());
+            mailMessage.setSubject(email.getSubject());
+            mailMessage.setText(email.getBody());
+            mailSender.send(mailMessage);
+
+            email.setStatus(EmailStatus.SENT);
+            email.setSentAt(LocalDateTime.now());
+            email.setLastError(null);
+            repository.save(email);
+            return true;
+        } catch (MailException e) {
+            String error = String.valueOf(e.getMessage());
+            email.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            if (email.getAttempts() >= maxAttempts) {
+                email.setStatus(EmailStatus.FAILED);
+                log.error("Email {} to {} failed after {} attempts", id, email.getRecipient(), email.getAttempts(), e);
+            } else {
+                email.setStatus(EmailStatus.PENDING);
+                email.setNextAttemptAt(LocalDateTime.now().plus(backoff.multipliedBy(1L << Math.min(email.getAttempts() - 1, 10))));
+                log.warn("Email {} to {} failed, attempt {} of {}: {}", id, email.getRecipient(), email.getAttempts(),
+                        maxAttempts, e.getMessage());
+            }
+            repository.save(email);
+            return false;
+        }
+    }
+
+    private Boolean await(Future<Boolean> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Email outbox worker failed", e.getCause());
+            return false;
+        }
+    }
+}
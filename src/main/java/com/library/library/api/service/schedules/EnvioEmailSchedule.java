@@ -1,17 +1,26 @@
 package com.library.library.api.service.schedules;
 
-import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LateLoanItem;
 import com.library.library.api.service.EmailService;
 import com.library.library.api.service.LoanService;
+import com.library.library.api.service.mail.LateLoanDigest;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
+@Slf4j
 public class EnvioEmailSchedule {
 
     private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
@@ -19,18 +28,85 @@ public class EnvioEmailSchedule {
     @Value("${application.mail.lateloans.message}")
     private String message;
 
+    @Value("${application.mail.lateloans.chunk-size:500}")
+    private int chunkSize;
+
     @Autowired
     private LoanService loanService;
 
     @Autowired
     private EmailService emailService;
 
-    @Scheduled(cron = CRON_LATE_LOANS)
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong lastDurationMillis = new AtomicLong();
+    private final AtomicLong lastDigests = new AtomicLong();
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.gauge("library.lateloans.job.last.duration", lastDurationMillis, AtomicLong::get);
+        meterRegistry.gauge("library.lateloans.job.last.emails", lastDigests, AtomicLong::get);
+    }
+
+    /**
+     * Walks the late loans in (email, id) order, {@code chunkSize} rows at a time, and sends one digest per
+     * customer email listing every late title. A customer whose loans straddle two chunks is carried over to
+     * the next one, so the memory used does not depend on how many loans are late.
+     *
+     * Off by default ({@code application.mail.lateloans.cron=-}) since {@link OverdueLoanTicker} notifies
+     * each loan once as it becomes late; give it a cron to remind every late customer periodically.
+     */
+    @Scheduled(cron = "${application.mail.lateloans.cron:" + CRON_LATE_LOANS + "}")
     public  void sendEmailToLateLoans(){
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
-        List<String> listEmails = allLateLoans.stream()
-                .map(loan -> loan.getCustomerEmail()).collect(Collectors.toList());
+        long jobStart = System.nanoTime();
+        String afterEmail = "";
+        long afterId = 0L;
+        int chunks = 0;
+        long loans = 0;
+        long emails = 0;
+        LateLoanDigest current = null;
+
+        Slice<LateLoanItem> chunk;
+        do {
+            long chunkStart = System.nanoTime();
+            chunk = loanService.getLateLoanItems(afterEmail, afterId, chunkSize);
+            if (!chunk.hasContent()) {
+                break;
+            }
+            List<LateLoanDigest> digests = new ArrayList<>(LateLoanDigest.groupByEmail(chunk));
+            if (current != null) {
+                if (current.getEmail().equals(digests.get(0).getEmail())) {
+                    current.addAll(digests.get(0));
+                    digests.set(0, current);
+                } else {
+                    digests.add(0, current);
+                }
+            }
+            current = digests.remove(digests.size() - 1);
+            if (!digests.isEmpty()) {
+                emailService.sendLateLoanDigests(message, digests);
+            }
+
+            LateLoanItem last = chunk.getContent().get(chunk.getNumberOfElements() - 1);
+            afterEmail = last.getCustomerEmail();
+            afterId = last.getId();
+            chunks++;
+            loans += chunk.getNumberOfElements();
+            emails += digests.size();
+            log.info("Late loans chunk {}: {} loans, {} digests in {} ms", chunks, chunk.getNumberOfElements(),
+                    digests.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart));
+        } while (chunk.hasNext());
 
-        emailService.sendMails(message, listEmails );
+        if (current != null) {
+            emailService.sendLateLoanDigests(message, Collections.singletonList(current));
+            emails++;
+        }
+        long elapsed = System.nanoTime() - jobStart;
+        meterRegistry.timer("library.lateloans.job").record(elapsed, TimeUnit.NANOSECONDS);
+        lastDurationMillis.set(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        lastDigests.set(emails);
+        log.info("Late loans job finished: {} loans, {} digests, {} chunks in {} ms", loans, emails, chunks,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
     }
 }
@@ -0,0 +1,23 @@
+package com.library.library.api.service.schedules;
+
+import com.library.library.api.service.LoanService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rebuilds the loan statistics from the database now and then, so counters that drifted (updates racing
+ * a rebuild, loans written by another instance) are corrected.
+ */
+@Service
+public class LoanStatisticsReconciler {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Scheduled(fixedDelayString = "${application.loans.statistics.reconcile-interval:900000}",
+            initialDelayString = "${application.loans.statistics.reconcile-interval:900000}")
+    public void reconcile(){
+        loanService.reconcileStatistics();
+    }
+}
@@ -0,0 +1,89 @@
+package com.library.library.api.service.schedules;
+
+import com.library.library.api.model.repository.LateLoanItem;
+import com.library.library.api.service.EmailService;
+import com.library.library.api.service.LoanService;
+import com.library.library.api.service.mail.LateLoanDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Notifies loans as they become overdue. Each tick takes the loans whose due instant has passed from the
+ * in-memory due queue kept by {@link LoanService} and sends one digest per customer, so no tick scans the
+ * open loans.
+ *
+ * The loans are marked as notified in the transaction that writes their digests to the outbox. A batch that
+ * fails rolls back and is queued again by the catch-up scan, which also picks up the loans made on other
+ * instances; the mark keeps every loan from being notified twice, after a restart or by another instance.
+ */
+@Service
+@Slf4j
+public class OverdueLoanTicker {
+
+    @Value("${application.mail.lateloans.message}")
+    private String message;
+
+    @Value("${application.loans.overdue.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Scheduled(fixedDelayString = "${application.loans.overdue.tick-interval:60000}")
+    public int tick(){
+        int fired = 0;
+        List<Long> loanIds;
+        do {
+            loanIds = loanService.pollOverdueLoans(batchSize);
+            if (loanIds.isEmpty()) {
+                break;
+            }
+            if (notify(loanIds)) {
+                fired += loanIds.size();
+            }
+        } while (loanIds.size() == batchSize);
+
+        if (fired > 0) {
+            log.info("{} loans became overdue", fired);
+        }
+        return fired;
+    }
+
+    @Scheduled(fixedDelayString = "${application.loans.overdue.catch-up-interval:300000}",
+            initialDelayString = "${application.loans.overdue.catch-up-interval:300000}")
+    public int catchUp(){
+        int queued = loanService.queueUnnotifiedOverdueLoans();
+        if (queued > 0) {
+            log.info("{} overdue loans not notified yet were queued", queued);
+        }
+        return queued;
+    }
+
+    private boolean notify(List<Long> loanIds) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<LateLoanItem> items = loanService.claimOverdueLoans(loanIds);
+                List<LateLoanDigest> digests = LateLoanDigest.groupByEmail(items);
+                if (!digests.isEmpty()) {
+                    emailService.sendLateLoanDigests(message, digests);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not notify {} overdue loans, the catch-up scan will queue them again", loanIds.size(), e);
+            return false;
+        }
+    }
+}
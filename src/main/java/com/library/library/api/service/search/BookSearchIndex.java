@@ -0,0 +1,234 @@
+package com.library.library.api.service.search;
+
+import com.library.library.api.model.Book;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over book titles and authors.
+ *
+ * Text is split on anything that is not a letter or digit, accents are stripped and case is folded. A query
+ * matches a book when every query token is a prefix of some token of the same field, so "aven" finds
+ * "As Aventuras"; a query with no letter or digit at all matches nothing. Writes are serialized; searches run
+ * lock-free against the postings, which are sorted primitive arrays replaced as a whole on every write.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final long[] NONE = new long[0];
+
+    private final NavigableMap<String, Postings> titleTerms = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Postings> authorTerms = new ConcurrentSkipListMap<>();
+    private final Map<Long, IndexedBook> books = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    public synchronized void index(Book book) {
+        add(book.getId(), new IndexedBook(tokenize(book.getTitle()), tokenize(book.getAuthor())));
+    }
+
+    /**
+     * Re-indexes the fields of a book that changed; a null {@code title} or {@code author} keeps the indexed one.
+     *
+     * @return false, leaving the index untouched, when a field is missing and the book is not indexed yet
+     */
+    public synchronized boolean update(Long id, String title, String author) {
+        IndexedBook current = books.get(id);
+        if (current == null && (title == null || author == null)) {
+            return false;
+        }
+        add(id, new IndexedBook(title != null ? tokenize(title) : current.title,
+                author != null ? tokenize(author) : current.author));
+        return true;
+    }
+
+    public synchronized void remove(Long id) {
+        IndexedBook indexed = books.remove(id);
+        if (indexed == null) {
+            return;
+        }
+        indexed.title.forEach(term -> removePosting(titleTerms, term, id));
+        indexed.author.forEach(term -> removePosting(authorTerms, term, id));
+    }
+
+    /**
+     * Called once every existing book has been indexed; until then searches must not be answered here.
+     */
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Ids of the books matching both the title and the author query, in ascending order.
+     * A null or blank query does not restrict its field.
+     */
+    public long[] search(String title, String author) {
+        Set<String> titleTokens = tokenize(title);
+        Set<String> authorTokens = tokenize(author);
+        if ((StringUtils.hasText(title) && titleTokens.isEmpty()) || (StringUtils.hasText(author) && authorTokens.isEmpty())) {
+            return NONE;
+        }
+        long[] candidates = match(titleTerms, titleTokens, null);
+        candidates = match(authorTerms, authorTokens, candidates);
+
+        return candidates == null ? books.keySet().stream().mapToLong(Long::longValue).sorted().toArray() : candidates;
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    static Set<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptySet();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * For each token, the union of the postings of every term it prefixes, kept to the ids of {@code candidates}
+     * when there are any; the result is sorted and distinct.
+     */
+    private long[] match(NavigableMap<String, Postings> terms, Set<String> tokens, long[] candidates) {
+        for (String token : tokens) {
+            Collection<Postings> matched = terms.subMap(token, true, token + Character.MAX_VALUE, true).values();
+            int total = 0;
+            List<Postings> snapshots = new ArrayList<>();
+            for (Postings postings : matched) {
+                snapshots.add(postings);
+                total += postings.size;
+            }
+            long[] matches = new long[total];
+            int size = 0;
+            for (Postings postings : snapshots) {
+                for (int i = 0; i < postings.size; i++) {
+                    long id = postings.ids[i];
+                    if (candidates == null || Arrays.binarySearch(candidates, id) >= 0) {
+                        matches[size++] = id;
+                    }
+                }
+            }
+            if (size == 0) {
+                return NONE;
+            }
+            candidates = distinct(matches, size, snapshots.size() > 1);
+        }
+        return candidates;
+    }
+
+    private static long[] distinct(long[] ids, int size, boolean sort) {
+        if (sort) {
+            Arrays.sort(ids, 0, size);
+        }
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return distinct == ids.length ? ids : Arrays.copyOf(ids, distinct);
+    }
+
+    private void add(Long id, IndexedBook indexed) {
+        remove(id);
+        indexed.title.forEach(term -> titleTerms.put(term, Postings.add(titleTerms.get(term), id)));
+        indexed.author.forEach(term -> authorTerms.put(term, Postings.add(authorTerms.get(term), id)));
+        books.put(id, indexed);
+    }
+
+    private void removePosting(NavigableMap<String, Postings> terms, String term, Long id) {
+        Postings postings = terms.get(term);
+        if (postings != null) {
+            Postings remaining = postings.remove(id);
+            if (remaining == null) {
+                terms.remove(term);
+            } else {
+                terms.put(term, remaining);
+            }
+        }
+    }
+
+    /**
+     * The sorted ids of one term, 8 bytes each. A snapshot never changes once published: appending a larger
+     * id writes past the end of the shared array and publishes a longer snapshot, anything else copies it.
+     */
+    private static final class Postings {
+        private final long[] ids;
+        private final int size;
+
+        private Postings(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        static Postings add(Postings postings, long id) {
+            if (postings == null) {
+                long[] ids = new long[4];
+                ids[0] = id;
+                return new Postings(ids, 1);
+            }
+            int index = Arrays.binarySearch(postings.ids, 0, postings.size, id);
+            if (index >= 0) {
+                return postings;
+            }
+            int insertion = -index - 1;
+            if (insertion == postings.size && postings.size < postings.ids.length) {
+                postings.ids[postings.size] = id;
+                return new Postings(postings.ids, postings.size + 1);
+            }
+            long[] ids = new long[Math.max(4, postings.size + (postings.size >> 1) + 1)];
+            System.arraycopy(postings.ids, 0, ids, 0, insertion);
+            ids[insertion] = id;
+            System.arraycopy(postings.ids, insertion, ids, insertion + 1, postings.size - insertion);
+            return new Postings(ids, postings.size + 1);
+        }
+
+        /**
+         * @return the postings without {@code id}, null when none are left
+         */
+        Postings remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return this;
+            }
+            if (size == 1) {
+                return null;
+            }
+            long[] remaining = new long[size - 1];
+            System.arraycopy(ids, 0, remaining, 0, index);
+            System.arraycopy(ids, index + 1, remaining, index, size - index - 1);
+            return new Postings(remaining, remaining.length);
+        }
+    }
+
+    private static class IndexedBook {
+        private final Set<String> title;
+        private final Set<String> author;
+
+        private IndexedBook(Set<String> title, Set<String> author) {
+            this.title = title;
+            this.author = author;
+        }
+    }
+}
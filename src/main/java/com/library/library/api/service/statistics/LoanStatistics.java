@@ -0,0 +1,118 @@
+package com.library.library.api.service.statistics;
+
+import com.library.library.api.service.concurrent.AtomicBitSet;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circulation counters kept up to date on every checkout, return and overdue event. Updates only touch
+ * {@link LongAdder}s, so concurrent loans do not contend on a shared counter, and every read is a single
+ * lookup. {@link #replace(LoanStatistics)} swaps in a set rebuilt from the database, which corrects any
+ * drift from updates that raced with the previous rebuild or came from another instance.
+ */
+public class LoanStatistics {
+
+    private volatile Counters counters = new Counters();
+
+    public void loanCreated(long bookId, String customer) {
+        Counters current = counters;
+        current.total.increment();
+        current.active.increment();
+        current.perBook.computeIfAbsent(bookId, id -> new LongAdder()).increment();
+        if (customer != null) {
+            current.activePerCustomer.computeIfAbsent(customer, c -> new LongAdder()).increment();
+        }
+    }
+
+    public void loanReturned(long loanId, String customer) {
+        Counters current = counters;
+        current.active.decrement();
+        if (customer != null) {
+            LongAdder active = current.activePerCustomer.get(customer);
+            if (active != null) {
+                active.decrement();
+            }
+        }
+        if (current.overdueLoans.remove(loanId)) {
+            current.overdue.decrement();
+        }
+    }
+
+    public void loanOverdue(long loanId) {
+        Counters current = counters;
+        if (current.overdueLoans.add(loanId)) {
+            current.overdue.increment();
+        }
+    }
+
+    public long totalLoans() {
+        return counters.total.sum();
+    }
+
+    public long activeLoans() {
+        return counters.active.sum();
+    }
+
+    public long overdueLoans() {
+        return counters.overdue.sum();
+    }
+
+    public long booksLoaned() {
+        return counters.perBook.size();
+    }
+
+    public long loansOfBook(long bookId) {
+        LongAdder loans = counters.perBook.get(bookId);
+        return loans == null ? 0 : loans.sum();
+    }
+
+    public long activeLoansOf(String customer) {
+        LongAdder loans = counters.activePerCustomer.get(customer);
+        return loans == null ? 0 : loans.sum();
+    }
+
+    public LocalDateTime reconciledAt() {
+        return counters.reconciledAt;
+    }
+
+    /**
+     * Adds {@code loans} past and present loans of a book; used while rebuilding.
+     */
+    public void addBookLoans(long bookId, long loans) {
+        Counters current = counters;
+        current.total.add(loans);
+        current.perBook.computeIfAbsent(bookId, id -> new LongAdder()).add(loans);
+    }
+
+    /**
+     * Adds one open loan; used while rebuilding.
+     */
+    public void addOpenLoan(long loanId, String customer, boolean overdue) {
+        Counters current = counters;
+        current.active.increment();
+        if (customer != null) {
+            current.activePerCustomer.computeIfAbsent(customer, c -> new LongAdder()).increment();
+        }
+        if (overdue) {
+            loanOverdue(loanId);
+        }
+    }
+
+    public void replace(LoanStatistics rebuilt) {
+        rebuilt.counters.reconciledAt = LocalDateTime.now();
+        counters = rebuilt.counters;
+    }
+
+    private static class Counters {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder active = new LongAdder();
+        private final LongAdder overdue = new LongAdder();
+        private final Map<Long, LongAdder> perBook = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> activePerCustomer = new ConcurrentHashMap<>();
+        private final AtomicBitSet overdueLoans = new AtomicBitSet();
+        private volatile LocalDateTime reconciledAt;
+    }
+}
@@ -0,0 +1,17 @@
+package com.library.library.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches are declared in application.properties (spring.cache.*); size, TTL and statistics come from the
+ * Caffeine spec, and hit/miss/eviction counters are published under /actuator/metrics/cache.*.
+ * Books themselves, by id and by ISBN, live in Hibernate's second-level cache (see {@link HibernateCacheConfig}).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOK_ISBN_EXISTS = "bookIsbnExists";
+    public static final String BOOK_VERSIONS = "bookVersions";
+}
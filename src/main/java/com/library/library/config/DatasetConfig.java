@@ -0,0 +1,43 @@
+package com.library.library.config;
+
+import com.library.library.dataset.DatasetGenerator;
+import com.library.library.dataset.DatasetProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Synthetic dataset, with the {@code dataset} profile: an empty database is filled from
+ * {@code application.dataset.*} at startup. Application runners complete before the ready event on which
+ * the services load their in-memory loan and search indexes, so those start from the generated rows; with
+ * {@code application.dataset.skip-warmup=true} they are not loaded at all.
+ */
+@Slf4j
+@Configuration
+@Profile("dataset")
+public class DatasetConfig {
+
+    @Bean
+    public DatasetProperties datasetProperties(Environment environment){
+        return Binder.get(environment).bind("application.dataset", DatasetProperties.class)
+                .orElseGet(DatasetProperties::new);
+    }
+
+    @Bean
+    public ApplicationRunner datasetGeneratorRunner(DataSource dataSource, DatasetProperties properties){
+        return args -> {
+            DatasetGenerator generator = new DatasetGenerator(dataSource, properties);
+            if (generator.hasBooks()) {
+                log.info("Dataset not generated, the database already has books");
+                return;
+            }
+            generator.generate();
+        };
+    }
+}
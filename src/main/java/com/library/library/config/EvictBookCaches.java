@@ -0,0 +1,22 @@
+package com.library.library.config;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Evicts the ISBN existence and version caches for the {@code book} argument of the annotated method once it
+ * returns. The book itself is kept current in the second-level cache by Hibernate.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Caching(evict = {
+        @CacheEvict(cacheNames = CacheConfig.BOOK_ISBN_EXISTS, key = "#book.isbn", condition = "#book?.isbn != null"),
+        @CacheEvict(cacheNames = CacheConfig.BOOK_VERSIONS, key = "#book.id", condition = "#book?.id != null")
+})
+public @interface EvictBookCaches {
+}
@@ -0,0 +1,65 @@
+package com.library.library.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.TypesafeConfigurator;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+
+/**
+ * Hibernate second-level cache, switched by {@code spring.jpa.properties.hibernate.cache.use_second_level_cache}:
+ * gives Hibernate a cache manager of its own, with the regions declared in the configured file, and turns on
+ * statistics, so the hit, miss and put counts of every region are reported by /actuator/cacheregions.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class HibernateCacheConfig {
+
+    private static final String CLASSPATH = "classpath:";
+
+    /**
+     * The JCache provider hands out one manager per configuration URI and class loader, so every session
+     * factory in the JVM (one per test context, each with its own database) would share the same regions.
+     * A class loader owned by this context keeps the regions, and their lifecycle, private to it.
+     * <p>
+     * The provider only reads its configuration from {@code application.conf}, whatever the URI, so the regions
+     * of the file are created here. Regions Hibernate asks for that the file does not declare fail the startup
+     * ({@code missing_cache_strategy=fail}) instead of being created unbounded and copied by value.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${spring.jpa.properties.hibernate.javax.cache.uri}") String uri){
+        ClassLoader contextClassLoader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName(), contextClassLoader)
+                .getCacheManager(URI.create(uri), contextClassLoader);
+        String resource = uri.startsWith(CLASSPATH) ? uri.substring(CLASSPATH.length()) : uri;
+        Config declared = ConfigFactory.parseResourcesAnySyntax(contextClassLoader, resource);
+        Config regions = ConfigFactory.load(contextClassLoader, declared);
+        for (String region : TypesafeConfigurator.cacheNames(declared)) {
+            cacheManager.createCache(region, TypesafeConfigurator.from(regions, region).get());
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheProperties(CacheManager hibernateCacheManager){
+        return properties -> {
+            properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+            properties.put("hibernate.generate_statistics", "true");
+        };
+    }
+
+    @Bean
+    public CacheRegionsEndpoint cacheRegionsEndpoint(EntityManagerFactory entityManagerFactory){
+        return new CacheRegionsEndpoint(entityManagerFactory);
+    }
+}
@@ -0,0 +1,64 @@
+package com.library.library.config;
+
+import com.library.library.api.dto.BookDto;
+import com.library.library.api.dto.LoanDto;
+import com.library.library.api.mapper.BookMapper;
+import com.library.library.api.mapper.LoanMapper;
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LoanListItem;
+import org.modelmapper.ModelMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Opt-in fallback to the reflective ModelMapper path, enabled with
+ * {@code application.mapper.model-mapper.enabled=true}. The generated mappers are used otherwise.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.mapper.model-mapper.enabled", havingValue = "true")
+public class ModelMapperConfig {
+
+    @Bean
+    public ModelMapper modelMapper(){
+        return new ModelMapper();
+    }
+
+    @Bean
+    @Primary
+    public BookMapper modelMapperBookMapper(ModelMapper modelMapper){
+        return new BookMapper() {
+            @Override
+            public BookDto toDto(Book book) {
+                return modelMapper.map(book, BookDto.class);
+            }
+
+            @Override
+            public Book toEntity(BookDto dto) {
+                return modelMapper.map(dto, Book.class);
+            }
+        };
+    }
+
+    @Bean
+    @Primary
+    public LoanMapper modelMapperLoanMapper(ModelMapper modelMapper){
+        return new LoanMapper() {
+            @Override
+            public LoanDto toDto(Loan loan) {
+                LoanDto loanDto = modelMapper.map(loan, LoanDto.class);
+                loanDto.setBookDto(modelMapper.map(loan.getBook(), BookDto.class));
+                return loanDto;
+            }
+
+            @Override
+            public LoanDto toDto(LoanListItem loan) {
+                LoanDto loanDto = modelMapper.map(loan, LoanDto.class);
+                loanDto.setBookDto(new BookDto(loan.getBookId(), loan.getTitle(), loan.getAuthor(), loan.getIsbn()));
+                return loanDto;
+            }
+        };
+    }
+}
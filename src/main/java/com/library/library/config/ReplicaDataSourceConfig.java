@@ -0,0 +1,85 @@
+package com.library.library.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica, enabled with {@code application.datasource.replica.enabled=true}: read-only transactions
+ * (the {@code @Transactional(readOnly = true)} query paths of the services and Spring Data's own reads) run
+ * on {@code application.datasource.replica.*}, everything else on {@code spring.datasource.*}.
+ * <p>
+ * Both pools stay private to this configuration and only the routing data source is a bean, so wrappers
+ * such as the SQL monitor see each statement once, and Flyway and Hibernate's schema validation, which run
+ * outside transactions, use the primary. Reads on the replica may lag the primary by the replication delay:
+ * they do not populate the second-level cache ({@link ReplicaReadJpaDialect}), and the service reads whose
+ * result feeds a write, such as the book looked up for an update or a checkout, run on the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig implements DisposableBean {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment) throws Exception {
+        Binder binder = Binder.get(environment);
+
+        DataSourceProperties replicaProperties = binder.bind("application.datasource.replica",
+                Bindable.of(DataSourceProperties.class)).get();
+        replicaProperties.setBeanClassLoader(getClass().getClassLoader());
+        replicaProperties.afterPropertiesSet();
+
+        HikariDataSource primary = pool(properties, "primary");
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        HikariDataSource replica = pool(replicaProperties, "replica");
+        binder.bind("application.datasource.replica.hikari", Bindable.ofInstance(replica));
+
+        pools.add(primary);
+        pools.add(replica);
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+    }
+
+    /**
+     * Installs {@link ReplicaReadJpaDialect} before the entity manager factory is built, so the transaction
+     * manager picks it up with the factory.
+     */
+    @Bean
+    public static BeanPostProcessor replicaReadJpaDialect() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+                    ((LocalContainerEntityManagerFactoryBean) bean).setJpaDialect(new ReplicaReadJpaDialect());
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String name){
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(name);
+        return pool;
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,53 @@
+package com.library.library.config;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+
+/**
+ * Keeps rows read on the replica out of the second-level cache. Read-only transactions still answer from the
+ * cache but do not put what they load into it ({@link CacheMode#GET}), so a row from a lagging replica is
+ * never served later to a write path. The previous cache mode is restored when the transaction ends, since
+ * the session can outlive it.
+ */
+public class ReplicaReadJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly()) {
+            return transactionData;
+        }
+        Session session = entityManager.unwrap(Session.class);
+        ReplicaReadData replicaRead = new ReplicaReadData(transactionData, session, session.getCacheMode());
+        session.setCacheMode(CacheMode.GET);
+        return replicaRead;
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaReadData) {
+            ReplicaReadData replicaRead = (ReplicaReadData) transactionData;
+            replicaRead.session.setCacheMode(replicaRead.previousCacheMode);
+            transactionData = replicaRead.transactionData;
+        }
+        super.cleanupTransaction(transactionData);
+    }
+
+    private static class ReplicaReadData {
+        private final Object transactionData;
+        private final Session session;
+        private final CacheMode previousCacheMode;
+
+        private ReplicaReadData(Object transactionData, Session session, CacheMode previousCacheMode) {
+            this.transactionData = transactionData;
+            this.session = session;
+            this.previousCacheMode = previousCacheMode;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.library.library.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the {@code @Scheduled} jobs unless {@code application.scheduling.enabled=false}, as set by
+ * DatasetCommand so overdue notifications and e-mails stay out of a bulk load.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "application.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,54 @@
+package com.library.library.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Opt-in SQL monitoring, enabled with {@code application.sql-monitor.enabled=true}: Hibernate statistics,
+ * per-statement counters and a slow-query log on the data source, both ranked by /actuator/topqueries.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.sql-monitor.enabled", havingValue = "true")
+public class SqlMonitorConfig {
+
+    @Bean
+    public static SqlStatistics sqlStatistics(@Value("${application.sql-monitor.slow-threshold:200ms}") Duration threshold,
+                                              @Value("${application.sql-monitor.max-statements:1000}") int maxStatements){
+        return new SqlStatistics(threshold, maxStatements);
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor(SqlStatistics sqlStatistics){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource)) {
+                    return bean;
+                }
+                return ProxyDataSourceBuilder.create((DataSource) bean)
+                        .name(beanName)
+                        .listener(sqlStatistics)
+                        .build();
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateStatistics(){
+        return properties -> properties.put("hibernate.generate_statistics", "true");
+    }
+
+    @Bean
+    public TopQueriesEndpoint topQueriesEndpoint(SqlStatistics sqlStatistics, EntityManagerFactory entityManagerFactory){
+        return new TopQueriesEndpoint(sqlStatistics, entityManagerFactory);
+    }
+}
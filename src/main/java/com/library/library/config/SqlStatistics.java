@@ -0,0 +1,164 @@
+package com.library.library.config;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Per-statement execution counts and times for every SQL statement run through the proxied data source,
+ * plus a warning log for statements slower than the threshold; their bind parameters, which can carry customer
+ * data, are only logged at debug. Statements are keyed with their IN lists collapsed, so a query run with
+ * 3 and with 40 ids is one entry. Recording is a map lookup and a few adders; at most {@code maxStatements}
+ * distinct statements are tracked.
+ */
+@Slf4j
+public class SqlStatistics implements QueryExecutionListener {
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private final long thresholdMillis;
+    private final int maxStatements;
+    private final Map<String, Counters> statements = new ConcurrentHashMap<>();
+    private final DefaultQueryLogEntryCreator logEntryCreator = new DefaultQueryLogEntryCreator();
+
+    public SqlStatistics(Duration threshold, int maxStatements) {
+        this.thresholdMillis = threshold.toMillis();
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    /**
+     * A batch is one execution: its elapsed time is split between the statements it carried, in proportion
+     * to how many times each appears, and each distinct statement counts the batch once.
+     */
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsed = execInfo.getElapsedTime();
+        int total = queryInfoList.size();
+        Map<String, long[]> batch = new LinkedHashMap<>();
+        for (int i = 0; i < total; i++) {
+            long[] occurrences = batch.computeIfAbsent(normalize(queryInfoList.get(i).getQuery()), key -> new long[2]);
+            occurrences[0]++;
+            occurrences[1] += updatedRows(execInfo.getResult(), i, total);
+        }
+        for (Map.Entry<String, long[]> statement : batch.entrySet()) {
+            Counters counters = statements.get(statement.getKey());
+            if (counters == null) {
+                if (statements.size() >= maxStatements) {
+                    continue;
+                }
+                counters = statements.computeIfAbsent(statement.getKey(), key -> new Counters());
+            }
+            counters.record(elapsed * statement.getValue()[0] / total, statement.getValue()[1]);
+        }
+        if (elapsed >= thresholdMillis) {
+            log.warn("Slow query ({} ms): {}", elapsed, queryInfoList.stream()
+                    .map(query -> normalize(query.getQuery())).collect(Collectors.joining("; ")));
+            if (log.isDebugEnabled()) {
+                log.debug("Slow query ({} ms): {}", elapsed, logEntryCreator.getLogEntry(execInfo, queryInfoList, false, false));
+            }
+        }
+    }
+
+    public List<Entry> top(int limit) {
+        return statements.entrySet().stream()
+                .map(entry -> entry.getValue().toEntry(entry.getKey()))
+                .sorted(Comparator.comparingLong(Entry::getTotalMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public void clear() {
+        statements.clear();
+    }
+
+    static String normalize(String sql) {
+        return IN_LIST.matcher(sql).replaceAll("in (?...)");
+    }
+
+    /**
+     * Rows changed by the {@code index}-th of {@code total} statements. A batch of plain statements reports one
+     * count per statement; a prepared statement run with several parameter sets reports one count per set,
+     * all of them its own.
+     */
+    private static long updatedRows(Object result, int index, int total) {
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        if (result instanceof int[]) {
+            int[] counts = (int[]) result;
+            if (total > 1 && counts.length == total) {
+                return Math.max(counts[index], 0);
+            }
+            if (index > 0) {
+                return 0;
+            }
+            long rows = 0;
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+            return rows;
+        }
+        return 0;
+    }
+
+    private static class Counters {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+
+        void record(long elapsed, long updated) {
+            count.increment();
+            totalMillis.add(elapsed);
+            maxMillis.accumulate(elapsed);
+            rows.add(updated);
+        }
+
+        Entry toEntry(String query) {
+            long executions = count.sum();
+            long total = totalMillis.sum();
+            return Entry.builder()
+                    .query(query)
+                    .count(executions)
+                    .totalMillis(total)
+                    .maxMillis(maxMillis.get())
+                    .avgMillis(executions == 0 ? 0 : (double) total / executions)
+                    .rows(rows.sum())
+                    .build();
+        }
+    }
+
+    @Data
+    @Builder
+    public static class Entry {
+        private String query;
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+        private double avgMillis;
+        /**
+         * For Hibernate queries, rows returned. For SQL statements, rows changed by INSERT, UPDATE and DELETE;
+         * SELECT statements stay at 0 since their result sets are not read by the listener.
+         */
+        private long rows;
+    }
+}
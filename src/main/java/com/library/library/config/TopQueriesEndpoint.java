@@ -0,0 +1,72 @@
+package com.library.library.config;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * /actuator/topqueries: SQL statements as seen by the data source and JPQL/criteria queries as seen by
+ * Hibernate, each ranked by total execution time. DELETE resets both.
+ */
+@Endpoint(id = "topqueries")
+public class TopQueriesEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SqlStatistics sqlStatistics;
+    private final Statistics hibernateStatistics;
+
+    public TopQueriesEndpoint(SqlStatistics sqlStatistics, EntityManagerFactory entityManagerFactory) {
+        this.sqlStatistics = sqlStatistics;
+        this.hibernateStatistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ReadOperation
+    public Map<String, Object> topQueries(@Nullable Integer limit) {
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statements", sqlStatistics.top(size));
+        result.put("queries", hibernateQueries(size));
+        result.put("entityLoads", hibernateStatistics.getEntityLoadCount());
+        result.put("entityFetches", hibernateStatistics.getEntityFetchCount());
+        result.put("preparedStatements", hibernateStatistics.getPrepareStatementCount());
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        sqlStatistics.clear();
+        hibernateStatistics.clear();
+    }
+
+    private List<SqlStatistics.Entry> hibernateQueries(int limit) {
+        return Arrays.stream(hibernateStatistics.getQueries())
+                .map(query -> {
+                    QueryStatistics statistics = hibernateStatistics.getQueryStatistics(query);
+                    long executions = statistics.getExecutionCount();
+                    return SqlStatistics.Entry.builder()
+                            .query(query)
+                            .count(executions)
+                            .totalMillis(statistics.getExecutionTotalTime())
+                            .maxMillis(statistics.getExecutionMaxTime())
+                            .avgMillis(executions == 0 ? 0 : (double) statistics.getExecutionTotalTime() / executions)
+                            .rows(statistics.getExecutionRowCount())
+                            .build();
+                })
+                .sorted(Comparator.comparingLong(SqlStatistics.Entry::getTotalMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
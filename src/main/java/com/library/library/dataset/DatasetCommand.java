@@ -0,0 +1,35 @@
+package com.library.library.dataset;
+
+import com.library.library.LibraryApiApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line entry of the dataset generator: starts the application without the web server and with the
+ * {@code dataset} profile against the configured database, fills it and exits, without loading the in-memory
+ * loan and search indexes ({@code application.dataset.skip-warmup}) and without the scheduled jobs
+ * ({@code application.scheduling.enabled}). Options are Spring arguments:
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.main-class=com.library.library.dataset.DatasetCommand \
+ *     -Dspring-boot.run.arguments="--spring.datasource.url=jdbc:h2:file:./target/scale --application.dataset.books=1000000 --application.dataset.loans=20000000"
+ * </pre>
+ */
+public final class DatasetCommand {
+
+    private DatasetCommand(){
+    }
+
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(LibraryApiApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setAdditionalProfiles("dataset");
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("application.dataset.skip-warmup", "true");
+        defaults.put("application.scheduling.enabled", "false");
+        application.setDefaultProperties(defaults);
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+}
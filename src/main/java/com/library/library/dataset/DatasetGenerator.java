@@ -0,0 +1,256 @@
+package com.library.library.dataset;
+
+import com.library.library.api.model.Loan;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fills an empty, migrated database with synthetic books and loans for scale tests, with plain JDBC batches
+ * on {@link DatasetProperties#getThreads()} connections:
+ * <ul>
+ *   <li>books {@code 1..books}, ISBN {@link #isbn(long)}, title from two of {@link #WORDS};</li>
+ *   <li>{@code loans} returned loans over the last {@code historyDays} days, books and customers drawn
+ *   with Zipf's law so a few best sellers and regular customers take most of them;</li>
+ *   <li>one open loan for {@code onLoanFraction} of the books, {@code overdueFraction} of them late.</li>
+ * </ul>
+ * Rows are written in chunks of {@value #BATCHES_PER_CHUNK} batches, each with its own random generator split
+ * from the seed, so the data depends on the seed and batch size but not on the number of threads. Must run
+ * before the application loads its in-memory loan indexes.
+ * <p>
+ * Measured through DatasetCommand with the default properties on a 1 vCPU, 5 GB host, into an H2 file database:
+ * 100,000 books and 1,000,000 loans in 345 s; 1,000,000 books, 5,000,000 returned and 99,830 open loans in
+ * 2,884 s, about 2,100 rows/s. That is far from tens of millions of loans in a minute. The time goes into H2
+ * maintaining the four secondary loan indexes. With those indexes dropped and rebuilt after the load, a run of
+ * 20,000 books and 200,000 loans took 28 s instead of 53 s.
+ */
+@Slf4j
+public class DatasetGenerator {
+
+    public static final String[] WORDS = {"aventuras", "estrada", "longa", "sertao", "mar", "noite", "cidade",
+            "memorias", "historia", "tempo", "jardim", "vento", "casa", "sombra", "rio", "pedra"};
+    public static final String[] AUTHORS = {"Fulano", "Ciclano", "Beltrano", "Machado", "Clarice", "Jorge", "Cecilia"};
+
+    private static final int BATCHES_PER_CHUNK = 20;
+    private static final int MAX_OVERDUE_DAYS = 30;
+    /** allocationSize of the book_seq generator on Book. */
+    private static final int BOOK_ID_ALLOCATION = 50;
+
+    private static final String INSERT_BOOK = "insert into book (id, title, author, isbn) values (?, ?, ?, ?)";
+    private static final String INSERT_LOAN = "insert into loan (customer, costomer_email, id_book, loan_date, " +
+            "returned, active_book_id) values (?, ?, ?, ?, ?, ?)";
+
+    private final DataSource dataSource;
+    private final DatasetProperties properties;
+
+    public DatasetGenerator(DataSource dataSource, DatasetProperties properties){
+        this.dataSource = dataSource;
+        this.properties = properties;
+    }
+
+    public static String isbn(long bookId){
+        return String.format("%013d", bookId);
+    }
+
+    public static String customer(int index){
+        return "customer-" + index;
+    }
+
+    public boolean hasBooks() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select id from book limit 1")) {
+            return resultSet.next();
+        }
+    }
+
+    public void generate() throws SQLException {
+        long started = System.nanoTime();
+        ZipfSampler books = new ZipfSampler(properties.getBooks(), properties.getBookSkew());
+        ZipfSampler customers = new ZipfSampler(properties.getCustomers(), properties.getCustomerSkew());
+        LocalDate today = LocalDate.now();
+        SplittableRandom seed = new SplittableRandom(properties.getSeed());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()));
+        long openLoans;
+        try {
+            openLoans = inChunks(executor, properties.getBooks(), seed,
+                    (batch, from, to, random) -> insertBooks(batch, from, to, random, customers, today));
+            inChunks(executor, properties.getLoans(), seed,
+                    (batch, from, to, random) -> insertReturnedLoans(batch, to - from, random, books, customers, today));
+        } finally {
+            executor.shutdown();
+        }
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("alter sequence book_seq restart with " + (properties.getBooks() + 1 + BOOK_ID_ALLOCATION));
+        }
+        log.info("Dataset generated in {} ms: {} books, {} returned loans, {} open loans",
+                (System.nanoTime() - started) / 1_000_000, properties.getBooks(), properties.getLoans(), openLoans);
+    }
+
+    /**
+     * Books {@code from + 1..to}, then the open loans of those books.
+     */
+    private long insertBooks(Batches batch, long from, long to, SplittableRandom random, ZipfSampler customers,
+                             LocalDate today) throws SQLException {
+        PreparedStatement book = batch.statement(INSERT_BOOK);
+        for (long id = from + 1; id <= to; id++) {
+            book.setLong(1, id);
+            book.setString(2, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+            book.setString(3, AUTHORS[random.nextInt(AUTHORS.length)]);
+            book.setString(4, isbn(id));
+            batch.add(book);
+        }
+        batch.flush();
+
+        PreparedStatement loan = batch.statement(INSERT_LOAN);
+        long open = 0;
+        for (long id = from + 1; id <= to; id++) {
+            if (random.nextDouble() >= properties.getOnLoanFraction()) {
+                continue;
+            }
+            long daysAgo = random.nextDouble() < properties.getOverdueFraction()
+                    ? Loan.LOAN_DAYS + random.nextInt(MAX_OVERDUE_DAYS)
+                    : random.nextLong(Loan.LOAN_DAYS);
+            setLoan(loan, customers.sample(random), id, today.minusDays(daysAgo), false);
+            loan.setLong(6, id);
+            batch.add(loan);
+            open++;
+        }
+        return open;
+    }
+
+    private long insertReturnedLoans(Batches batch, long count, SplittableRandom random, ZipfSampler books,
+                                     ZipfSampler customers, LocalDate today) throws SQLException {
+        PreparedStatement loan = batch.statement(INSERT_LOAN);
+        for (long i = 0; i < count; i++) {
+            setLoan(loan, customers.sample(random), books.sample(random) + 1L,
+                    today.minusDays(1 + random.nextInt(properties.getHistoryDays())), true);
+            loan.setNull(6, Types.BIGINT);
+            batch.add(loan);
+        }
+        return count;
+    }
+
+    private static void setLoan(PreparedStatement loan, int customer, long bookId, LocalDate loanDate, boolean returned)
+            throws SQLException {
+        loan.setString(1, customer(customer));
+        loan.setString(2, customer(customer) + "@library-api.com");
+        loan.setLong(3, bookId);
+        loan.setDate(4, Date.valueOf(loanDate));
+        loan.setBoolean(5, returned);
+    }
+
+    /**
+     * Splits {@code rows} into fixed chunks written in parallel, each on its own connection, and sums what
+     * the writer returns.
+     */
+    private long inChunks(ExecutorService executor, long rows, SplittableRandom seed, ChunkWriter writer)
+            throws SQLException {
+        long chunkRows = (long) properties.getBatchSize() * BATCHES_PER_CHUNK;
+        List<Future<Long>> chunks = new ArrayList<>();
+        for (long from = 0; from < rows; from += chunkRows) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(rows, from + chunkRows);
+            SplittableRandom random = seed.split();
+            chunks.add(executor.submit(() -> {
+                try (Batches batch = new Batches(dataSource.getConnection(), properties.getBatchSize())) {
+                    long written = writer.write(batch, chunkFrom, chunkTo, random);
+                    batch.flush();
+                    return written;
+                }
+            }));
+        }
+        long total = 0;
+        try {
+            for (Future<Long> chunk : chunks) {
+                total += chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Dataset generation interrupted", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Dataset generation failed", e.getCause());
+        }
+        return total;
+    }
+
+    private interface ChunkWriter {
+        long write(Batches batch, long from, long to, SplittableRandom random) throws SQLException;
+    }
+
+    /**
+     * The statements of one chunk on one connection, executed and committed every {@code batchSize} rows.
+     */
+    private static final class Batches implements AutoCloseable {
+
+        private final Connection connection;
+        private final int batchSize;
+        private final List<PreparedStatement> statements = new ArrayList<>();
+        private PreparedStatement pending;
+        private int pendingRows;
+
+        Batches(Connection connection, int batchSize) throws SQLException {
+            this.connection = connection;
+            this.batchSize = batchSize;
+            connection.setAutoCommit(false);
+        }
+
+        PreparedStatement statement(String sql) throws SQLException {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statements.add(statement);
+            return statement;
+        }
+
+        void add(PreparedStatement statement) throws SQLException {
+            if (pending != null && pending != statement) {
+                flush();
+            }
+            statement.addBatch();
+            pending = statement;
+            if (++pendingRows >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (pending != null) {
+                pending.executeBatch();
+                connection.commit();
+                pending = null;
+                pendingRows = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                for (PreparedStatement statement : statements) {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
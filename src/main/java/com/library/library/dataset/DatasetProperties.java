@@ -0,0 +1,42 @@
+package com.library.library.dataset;
+
+import lombok.Data;
+
+/**
+ * Shape of a generated dataset, bound from {@code application.dataset.*}.
+ */
+@Data
+public class DatasetProperties {
+
+    /** Books, with ids {@code 1..books} and ISBNs {@link DatasetGenerator#isbn(long)}. */
+    private int books = 100_000;
+
+    /** Returned loans spread over the last {@link #historyDays} days. */
+    private long loans = 1_000_000;
+
+    /** Distinct customers, named {@link DatasetGenerator#customer(int)}. */
+    private int customers = 50_000;
+
+    /** Zipf exponent of book popularity: 0 is uniform, around 1 a few best sellers take most loans. */
+    private double bookSkew = 1.0;
+
+    /** Zipf exponent of customer activity. */
+    private double customerSkew = 1.0;
+
+    /** Fraction of the books currently on loan, one open loan each. */
+    private double onLoanFraction = 0.1;
+
+    /** Fraction of the open loans past their due date. */
+    private double overdueFraction = 0.2;
+
+    private int historyDays = 365;
+
+    /** Rows per JDBC batch; each batch is committed on its own. */
+    private int batchSize = 5_000;
+
+    /** Connections inserting in parallel. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /** The same seed and batch size give the same rows, whatever the number of threads. */
+    private long seed = 42;
+}
@@ -0,0 +1,50 @@
+package com.library.library.dataset;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Samples {@code 0..size-1} with Zipf's law: rank {@code k} is drawn with probability proportional to
+ * {@code 1 / (k + 1)^exponent}, so a few values take most of the draws. Ranks are spread over the values
+ * by a fixed permutation, so the popular ones are not simply the lowest ids.
+ * <p>
+ * The cumulative distribution is kept in memory ({@code 8 * size} bytes) and searched per draw; the sampler
+ * is immutable and can be shared between threads, each with its own random generator.
+ */
+final class ZipfSampler {
+
+    /** Prime above any {@code int} size, hence coprime with it: {@code rank * STRIDE mod size} is a permutation. */
+    private static final long STRIDE = 2_147_483_647L;
+
+    private final double[] cumulative;
+
+    ZipfSampler(int size, double exponent){
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        cumulative = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += exponent == 0 ? 1 : Math.pow(rank + 1, -exponent);
+            cumulative[rank] = total;
+        }
+    }
+
+    int size(){
+        return cumulative.length;
+    }
+
+    int sample(SplittableRandom random){
+        return valueOf(rank(random));
+    }
+
+    int rank(SplittableRandom random){
+        double point = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, point);
+        return Math.min(index >= 0 ? index + 1 : -index - 1, cumulative.length - 1);
+    }
+
+    int valueOf(int rank){
+        return (int) (rank * STRIDE % cumulative.length);
+    }
+}
@@ -0,0 +1,38 @@
+create sequence book_seq start with 1 increment by 50;
+create sequence email_outbox_seq start with 1 increment by 50;
+
+create table book (
+    id bigint not null,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    constraint pk_book primary key (id)
+);
+
+create table loan (
+    id bigint generated by default as identity,
+    customer varchar(255),
+    costomer_email varchar(255),
+    id_book bigint,
+    loan_date date,
+    returned boolean,
+    active_book_id bigint,
+    constraint pk_loan primary key (id),
+    constraint fk_loan_book foreign key (id_book) references book (id),
+    constraint uk_loan_active_book unique (active_book_id)
+);
+
+create table email_outbox (
+    id bigint not null,
+    sender varchar(255),
+    recipient varchar(255),
+    subject varchar(255),
+    body varchar(4000),
+    status varchar(255),
+    attempts integer not null,
+    next_attempt_at timestamp,
+    created_at timestamp,
+    sent_at timestamp,
+    last_error varchar(1000),
+    constraint pk_email_outbox primary key (id)
+);
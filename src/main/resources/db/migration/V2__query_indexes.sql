@@ -0,0 +1,19 @@
+-- findByIsbn / existsByIsbn
+create unique index ux_book_isbn on book (isbn);
+
+-- open loans are returned = false from now on, so the filters below can use plain equality
+update loan set returned = false where returned is null;
+alter table loan alter column returned set default false;
+alter table loan alter column returned set not null;
+
+-- existsByBookAndNotReturned, findByBook
+create index ix_loan_book_returned on loan (id_book, returned);
+
+-- findbyLoanDateLessThanAndNotReturned, findLateLoanItems
+create index ix_loan_returned_date on loan (returned, loan_date);
+
+-- findByBookIsbnOrCustomer (the isbn side goes through ux_book_isbn and ix_loan_book_returned)
+create index ix_loan_customer on loan (customer);
+
+-- EmailOutboxRepository.findDueIds
+create index ix_email_outbox_due on email_outbox (status, next_attempt_at);
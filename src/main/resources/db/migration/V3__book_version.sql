@@ -0,0 +1,2 @@
+-- optimistic lock version, also the source of the book ETags
+alter table book add column version bigint default 0 not null;
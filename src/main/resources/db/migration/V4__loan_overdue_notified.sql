@@ -0,0 +1,3 @@
+-- set in the transaction that writes the overdue digest to the outbox, so a loan is notified once
+-- whatever the restarts or the number of instances
+alter table loan add column overdue_notified boolean default false not null;
@@ -0,0 +1,5 @@
+-- a digest lists every late loan of a customer, so its body has no fixed bound
+alter table email_outbox alter column body clob;
+
+-- findLateLoanItems walks the late loans in (customer email, id) keyset order
+create index ix_loan_email_id on loan (costomer_email, id);
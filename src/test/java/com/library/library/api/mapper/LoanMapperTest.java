@@ -0,0 +1,66 @@
+package com.library.library.api.mapper;
+
+import com.library.library.api.dto.BookDto;
+import com.library.library.api.dto.LoanDto;
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LoanListItem;
+import com.library.library.api.service.LoanServiceTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanMapperTest {
+
+    private final BookMapper bookMapper = new BookMapperImpl();
+    private final LoanMapper loanMapper = new LoanMapperImpl(bookMapper);
+
+    @Test
+    @DisplayName("Deve mapear um emprestimo com o livro aninhado")
+    public void loanToDtoTest(){
+        Book book = Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("123").build();
+        Loan loan = Loan.builder().id(2L).book(book).customer("Ciclano")
+                .customerEmail("ciclano@email.com").loanDate(LocalDate.now()).build();
+
+        LoanDto dto = loanMapper.toDto(loan);
+
+        assertThat(dto.getId()).isEqualTo(2L);
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getCustomer()).isEqualTo("Ciclano");
+        assertThat(dto.getCustomerEmail()).isEqualTo("ciclano@email.com");
+        assertThat(dto.getBookDto().getId()).isEqualTo(1L);
+        assertThat(dto.getBookDto().getTitle()).isEqualTo("As aventuras");
+    }
+
+    @Test
+    @DisplayName("Deve mapear uma linha da listagem de emprestimos com o livro aninhado")
+    public void loanListItemToDtoTest(){
+        LoanListItem item = LoanServiceTest.createLoanListItem(2L, "Ciclano", 1L, "123");
+
+        LoanDto dto = loanMapper.toDto(item);
+
+        assertThat(dto.getId()).isEqualTo(2L);
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getCustomer()).isEqualTo("Ciclano");
+        assertThat(dto.getBookDto().getId()).isEqualTo(1L);
+        assertThat(dto.getBookDto().getTitle()).isEqualTo("As aventuras");
+        assertThat(dto.getBookDto().getAuthor()).isEqualTo("Fulano");
+        assertThat(dto.getBookDto().getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Deve mapear um dto para livro")
+    public void bookToEntityTest(){
+        BookDto dto = BookDto.builder().title("As aventuras").author("Fulano").isbn("123").build();
+
+        Book book = bookMapper.toEntity(dto);
+
+        assertThat(book.getId()).isNull();
+        assertThat(book.getTitle()).isEqualTo(dto.getTitle());
+        assertThat(book.getAuthor()).isEqualTo(dto.getAuthor());
+        assertThat(book.getIsbn()).isEqualTo(dto.getIsbn());
+    }
+}
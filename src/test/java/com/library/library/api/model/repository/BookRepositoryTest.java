@@ -1,21 +1,30 @@
 package com.library.library.api.model.repository;
 
+import com.library.library.api.exceptions.ConstraintViolations;
 import com.library.library.api.model.Book;
+import com.library.library.config.HibernateCacheConfig;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @DataJpaTest
+@Import(HibernateCacheConfig.class)
 public class BookRepositoryTest {
 
     @Autowired
@@ -38,6 +47,29 @@ public class BookRepositoryTest {
         Assertions.assertThat(exists).isTrue();
     }
 
+    @Test
+    @DisplayName("Deve recusar dois livros com o mesmo Isbn")
+    public void uniqueIsbnTest(){
+        entityManager.persistAndFlush(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+
+        Throwable throwable = Assertions.catchThrowable(() -> entityManager.persistAndFlush(
+                Book.builder().title("Estrada longa").author("Ciclano").isbn("123").build()));
+
+        Assertions.assertThat(throwable).isInstanceOf(PersistenceException.class);
+    }
+
+    @Test
+    @DisplayName("Deve identificar a violacao do indice unico de Isbn")
+    public void uniqueIsbnViolationTest(){
+        repository.saveAndFlush(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+
+        Throwable throwable = Assertions.catchThrowable(() -> repository.saveAndFlush(
+                Book.builder().title("Estrada longa").author("Ciclano").isbn("123").build()));
+
+        Assertions.assertThat(throwable).isInstanceOf(DataIntegrityViolationException.class);
+        Assertions.assertThat(ConstraintViolations.isViolationOf((DataIntegrityViolationException) throwable, Book.ISBN_INDEX)).isTrue();
+    }
+
     @Test
     @DisplayName("Deve retornar falso quando não houver livro com Isbn igual ao informado")
     public void returnFalseWhenIsbnDoesntExists(){
@@ -84,4 +116,54 @@ public class BookRepositoryTest {
         Assertions.assertThat(deletedBook).isNull();
 
     }
+
+    @Test
+    @DisplayName("Deve retornar apenas os isbns ja cadastrados")
+    public void findExistingIsbnsTest(){
+        entityManager.persist(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        entityManager.persist(Book.builder().title("Estrada longa").author("Ciclano").isbn("456").build());
+
+        List<String> existing = repository.findExistingIsbns(Arrays.asList("123", "456", "789"));
+
+        Assertions.assertThat(existing).containsExactlyInAnyOrder("123", "456");
+    }
+
+    @Test
+    @DisplayName("Deve percorrer todos os livros em ordem de id")
+    public void streamAllTest(){
+        Book first = entityManager.persist(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        Book second = entityManager.persist(Book.builder().title("Estrada longa").author("Ciclano").isbn("456").build());
+
+        try (Stream<Book> books = repository.streamAll()) {
+            Assertions.assertThat(books.map(Book::getId)).containsExactly(first.getId(), second.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Deve alterar apenas os campos informados e incrementar a versao")
+    public void patchTest(){
+        Book book = entityManager.persistAndFlush(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        Long version = book.getVersion();
+        entityManager.clear();
+
+        int updated = repository.patch(book.getId(), version, "Novas aventuras", null);
+
+        Assertions.assertThat(updated).isEqualTo(1);
+        entityManager.clear();
+        Book patched = entityManager.find(Book.class, book.getId());
+        Assertions.assertThat(patched.getTitle()).isEqualTo("Novas aventuras");
+        Assertions.assertThat(patched.getAuthor()).isEqualTo("Fulano");
+        Assertions.assertThat(patched.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    @DisplayName("Nao deve alterar o livro quando a versao ou o id nao conferem")
+    public void patchStaleVersionTest(){
+        Book book = entityManager.persistAndFlush(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        entityManager.clear();
+
+        Assertions.assertThat(repository.patch(book.getId(), book.getVersion() + 1, "Novas aventuras", null)).isZero();
+        Assertions.assertThat(repository.patch(book.getId() + 1, null, "Novas aventuras", null)).isZero();
+        Assertions.assertThat(entityManager.find(Book.class, book.getId()).getTitle()).isEqualTo("As aventuras");
+    }
 }
@@ -1,24 +1,36 @@
 package com.library.library.api.model.repository;
 
+import com.library.library.api.exceptions.ConstraintViolations;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
+import com.library.library.config.HibernateCacheConfig;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDate;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(HibernateCacheConfig.class)
 public class LoanRepositoryTest {
 
     @Autowired
@@ -27,6 +39,9 @@ public class LoanRepositoryTest {
     @Autowired
     private LoanRepository repository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     @DisplayName("Deve verificar se o livro não esta emprestado")
     public void existsByBookAndNotReturnedTest(){
@@ -70,6 +85,195 @@ public class LoanRepositoryTest {
         assertThat(loans).isEmpty();
     }
 
+    @Test
+    @DisplayName("Deve percorrer os emprestimos de um cliente por cursor de data e id")
+    public void findSliceByBookIsbnOrCustomerTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        Loan first = Loan.builder().book(book).loanDate(LocalDate.now().minusDays(2)).customer("Fulano").build();
+        Loan second = Loan.builder().book(book).loanDate(LocalDate.now().minusDays(1)).customer("Fulano").build();
+        Loan third = Loan.builder().book(book).loanDate(LocalDate.now().minusDays(1)).customer("Fulano").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+
+        Slice<Loan> page = repository.findSliceByBookIsbnOrCustomer(null, "Fulano", null, null, PageRequest.of(0, 2));
+
+        assertThat(page.getContent()).containsExactly(first, second);
+        assertThat(page.hasNext()).isTrue();
+
+        Slice<Loan> next = repository.findSliceByBookIsbnOrCustomer(null, "Fulano",
+                second.getLoanDate(), second.getId(), PageRequest.of(0, 2));
+
+        assertThat(next.getContent()).containsExactly(third);
+        assertThat(next.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve percorrer por cursor os emprestimos sem data antes dos demais")
+    public void findSliceByBookWithoutLoanDateTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        Loan dated = Loan.builder().book(book).loanDate(LocalDate.now()).customer("Fulano").build();
+        Loan undated = Loan.builder().book(book).customer("Fulano").build();
+        Loan otherUndated = Loan.builder().book(book).customer("Ciclano").build();
+        entityManager.persist(dated);
+        entityManager.persist(undated);
+        entityManager.persist(otherUndated);
+
+        Slice<Loan> page = repository.findSliceByBook(book, null, null, PageRequest.of(0, 1));
+
+        assertThat(page.getContent()).containsExactly(undated);
+        assertThat(page.hasNext()).isTrue();
+
+        Slice<Loan> next = repository.findSliceByBook(book, null, undated.getId(), PageRequest.of(0, 2));
+
+        assertThat(next.getContent()).containsExactly(otherUndated, dated);
+        assertThat(next.hasNext()).isFalse();
+
+        Slice<Loan> all = repository.findSliceByBookIsbnOrCustomer(null, null, null, null, PageRequest.of(0, 10));
+
+        assertThat(all.getContent()).containsExactly(undated, otherUndated, dated);
+    }
+
+    @Test
+    @DisplayName("Deve listar emprestimos com seus livros sem consultas extras por linha")
+    public void findByBookIsbnOrCustomerStatementCountTest(){
+        for (int i = 0; i < 3; i++) {
+            Book book = Book.builder().title("Livro " + i).author("Fulano").isbn("isbn-" + i).build();
+            entityManager.persist(book);
+            entityManager.persist(Loan.builder().book(book).loanDate(LocalDate.now()).customer("Fulano").build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<LoanListItem> page = repository.findByBookIsbnOrCustomer(null, "Fulano", PageRequest.of(0, 2));
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent().get(0).getIsbn()).startsWith("isbn-");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve obter os emprestimos atrasados em blocos ordenados por email e id")
+    public void findLateLoanItemsTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        Loan late = Loan.builder().book(book).loanDate(LocalDate.now().minusDays(5))
+                .customer("Fulano").customerEmail("fulano@email.com").build();
+        Loan otherLate = Loan.builder().book(book).loanDate(LocalDate.now().minusDays(6))
+                .customer("Ciclano").customerEmail("ciclano@email.com").build();
+        Loan onTime = Loan.builder().book(book).loanDate(LocalDate.now())
+                .customer("Beltrano").customerEmail("beltrano@email.com").build();
+        entityManager.persist(late);
+        entityManager.persist(otherLate);
+        entityManager.persist(onTime);
+
+        Slice<LateLoanItem> first = repository.findLateLoanItems(LocalDate.now().minusDays(4), "", 0L,
+                PageRequest.of(0, 1));
+
+        assertThat(first.getContent()).hasSize(1);
+        assertThat(first.getContent().get(0).getCustomerEmail()).isEqualTo("ciclano@email.com");
+        assertThat(first.getContent().get(0).getTitle()).isEqualTo("As aventuras");
+        assertThat(first.hasNext()).isTrue();
+
+        LateLoanItem last = first.getContent().get(0);
+        Slice<LateLoanItem> second = repository.findLateLoanItems(LocalDate.now().minusDays(4),
+                last.getCustomerEmail(), last.getId(), PageRequest.of(0, 1));
+
+        assertThat(second.getContent().get(0).getCustomerEmail()).isEqualTo("fulano@email.com");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve obter os emprestimos em aberto com o id do livro")
+    public void findOpenLoansTest(){
+        Book loaned = createNewBook();
+        Book returned = Book.builder().title("O retorno").author("Fulano").isbn("456").build();
+        entityManager.persist(loaned);
+        entityManager.persist(returned);
+        entityManager.persist(Loan.builder().book(loaned).customer("Fulano").loanDate(LocalDate.now())
+                .activeBookId(loaned.getId()).build());
+        entityManager.persist(Loan.builder().book(returned).customer("Fulano").loanDate(LocalDate.now())
+                .returned(true).build());
+
+        Slice<OpenLoan> open = repository.findOpenLoans(0L, PageRequest.of(0, 10));
+
+        assertThat(open.getContent()).hasSize(1);
+        assertThat(open.getContent().get(0).getBookId()).isEqualTo(loaned.getId());
+        assertThat(open.getContent().get(0).getLoanDate()).isEqualTo(LocalDate.now());
+    }
+
+    @Test
+    @DisplayName("Deve devolver em um unico update apenas os emprestimos em aberto")
+    public void returnLoansTest(){
+        Book first = createNewBook();
+        Book second = Book.builder().title("O retorno").author("Fulano").isbn("456").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        Loan open = entityManager.persist(Loan.builder().book(first).customer("Fulano").loanDate(LocalDate.now())
+                .activeBookId(first.getId()).build());
+        Loan returned = entityManager.persist(Loan.builder().book(second).customer("Fulano").loanDate(LocalDate.now())
+                .returned(true).build());
+        entityManager.flush();
+
+        assertThat(repository.findOpenLoansByIds(List.of(open.getId(), returned.getId())))
+                .extracting(OpenLoan::getId).containsExactly(open.getId());
+
+        int updated = repository.returnLoans(List.of(open.getId(), returned.getId()));
+
+        assertThat(updated).isEqualTo(1);
+        Loan reloaded = entityManager.find(Loan.class, open.getId());
+        assertThat(reloaded.getReturned()).isTrue();
+        assertThat(reloaded.getActiveBookId()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve marcar como notificados apenas os emprestimos em aberto ainda nao notificados")
+    public void claimOverdueLoansTest(){
+        Book first = createNewBook();
+        Book second = Book.builder().title("O retorno").author("Fulano").isbn("456").build();
+        entityManager.persist(first);
+        entityManager.persist(second);
+        Loan open = entityManager.persist(Loan.builder().book(first).customer("Fulano").loanDate(LocalDate.now().minusDays(5))
+                .activeBookId(first.getId()).build());
+        Loan notified = entityManager.persist(Loan.builder().book(second).customer("Fulano").loanDate(LocalDate.now().minusDays(5))
+                .activeBookId(second.getId()).overdueNotified(true).build());
+        entityManager.flush();
+
+        assertThat(repository.findUnnotifiedOverdueLoans(LocalDate.now().minusDays(4), 0L, PageRequest.of(0, 10)))
+                .extracting(OpenLoan::getId).containsExactly(open.getId());
+        List<Long> claimed = repository.lockUnnotifiedOpenLoans(List.of(open.getId(), notified.getId()));
+        assertThat(claimed).containsExactly(open.getId());
+
+        repository.markOverdueNotified(claimed);
+
+        assertThat(repository.lockUnnotifiedOpenLoans(List.of(open.getId(), notified.getId()))).isEmpty();
+        assertThat(repository.findUnnotifiedOverdueLoans(LocalDate.now().minusDays(4), 0L, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve identificar a violacao da restricao de um emprestimo ativo por livro")
+    public void activeBookConstraintTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+        entityManager.persistAndFlush(Loan.builder().book(book).customer("Fulano").activeBookId(book.getId()).build());
+
+        Throwable throwable = catchThrowable(() -> repository.saveAndFlush(
+                Loan.builder().book(book).customer("Ciclano").activeBookId(book.getId()).build()));
+
+        assertThat(throwable).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(ConstraintViolations.isViolationOf((DataIntegrityViolationException) throwable, Loan.ACTIVE_BOOK_CONSTRAINT)).isTrue();
+        assertThat(ConstraintViolations.isViolationOf((DataIntegrityViolationException) throwable, "fk_loan_book")).isFalse();
+    }
+
     private Book createNewBook(){
         return Book.builder().title("As aventuras").author("Fulano").isbn("123").build();
     }
@@ -2,9 +2,13 @@ package com.library.library.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.library.library.api.dto.BookDto;
+import com.library.library.api.dto.BookImportResultDto;
 import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.mapper.BookMapperImpl;
+import com.library.library.api.mapper.LoanMapperImpl;
 import com.library.library.api.model.Book;
 import com.library.library.api.service.BookService;
+import com.library.library.api.service.LoanService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,9 +19,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -26,9 +32,12 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -36,6 +45,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class BookControllerTest {
 
     static String BOOK_API = "/api/books";
@@ -46,6 +56,9 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    LoanService loanService;
+
     @Test
     @DisplayName("Deve criar um livro com sucesso.")
     public void createBookTest() throws Exception {
@@ -267,6 +280,198 @@ public class BookControllerTest {
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Deve retornar o ETag da versão do livro")
+    public void getBookETagTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Meu livro").author("Autor").isbn("123").version(3L).build();
+
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(3L));
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(header().exists("Cache-Control"))
+                .andExpect(jsonPath("id").value(1L));
+    }
+
+    @Test
+    @DisplayName("Deve retornar not modified sem carregar o livro quando o ETag não mudou")
+    public void getBookNotModifiedTest() throws Exception {
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(3L));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                        .header("If-None-Match", "\"1-3\"")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(content().string(""));
+
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar o livro quando o ETag informado estiver desatualizado")
+    public void getBookStaleETagTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Meu livro").author("Autor").isbn("123").version(4L).build();
+
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(4L));
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                        .header("If-None-Match", "\"1-3\"")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-4\""));
+    }
+
+    @Test
+    @DisplayName("Deve retornar not modified na busca paginada quando a página não mudou")
+    public void findBooksNotModifiedTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Meu livro").author("Autor").isbn("123").version(0L).build();
+
+        BDDMockito.given( service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Arrays.asList(book), PageRequest.of(0,100), 1));
+
+        String eTag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Meu&page=0&size=100"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Meu&page=0&size=100"))
+                        .header("If-None-Match", eTag)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("Deve alterar parcialmente um livro na versao informada")
+    public void patchBookTest() throws Exception {
+        BDDMockito.given(service.patch(Mockito.eq(1L), Mockito.eq(3L), Mockito.any(Book.class))).willReturn(true);
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+                        .header("If-Match", "\"1-3\"")
+                        .content("{\"title\":\"Novo titulo\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"1-4\""));
+
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+        Mockito.verify(service).patch(Mockito.eq(1L), Mockito.eq(3L),
+                Mockito.argThat(book -> "Novo titulo".equals(book.getTitle()) && book.getAuthor() == null));
+    }
+
+    @Test
+    @DisplayName("Deve retornar precondition failed quando a versao informada estiver desatualizada")
+    public void patchStaleBookTest() throws Exception {
+        BDDMockito.given(service.patch(Mockito.eq(1L), Mockito.eq(3L), Mockito.any(Book.class))).willReturn(false);
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(4L));
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+                        .header("If-Match", "\"1-3\"")
+                        .content("{\"title\":\"Novo titulo\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("Deve retornar not found ao alterar parcialmente um livro inexistente")
+    public void patchInexistentBookTest() throws Exception {
+        BDDMockito.given(service.patch(Mockito.eq(1L), Mockito.isNull(), Mockito.any(Book.class))).willReturn(false);
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+                        .content("{\"author\":\"Novo autor\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os livros por cursor")
+    public void scrollBooksTest() throws Exception {
+        Book book = Book.builder().id(7L).title("Meu livro").author("Autor").isbn("123").build();
+
+        SliceImpl<Book> firstSlice = new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 1), true);
+        String next = Cursors.nextBook(firstSlice);
+        BDDMockito.given(service.scroll(0L, 1)).willReturn(firstSlice);
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(BOOK_API.concat("/scroll?size=1"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(requestBuilder)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(7))
+                .andExpect(jsonPath("size").value(1))
+                .andExpect(jsonPath("next").value(next))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+
+        BDDMockito.given(service.scroll(7L, 1))
+                .willReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 1), false));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/scroll?size=1&after=" + next)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(0)))
+                .andExpect(jsonPath("next").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve retornar badRequest para um cursor invalido")
+    public void invalidCursorTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/scroll?after=@@")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("Deve importar uma lista de livros")
+    public void importBooksTest() throws Exception {
+        BookDto accepted = createNewBook();
+        BookDto rejected = BookDto.builder().author("Autor").title("Outro livro").isbn("123").build();
+
+        BDDMockito.given(service.importBooks(Mockito.anyList())).willReturn(Arrays.asList(
+                BookImportResultDto.builder().index(0).isbn("123").accepted(true).id(1L).build(),
+                BookImportResultDto.builder().index(1).isbn("123").error("Isbn duplicado no lote.").build()));
+
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(accepted, rejected));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].accepted").value(true))
+                .andExpect(jsonPath("[0].id").value(1))
+                .andExpect(jsonPath("[1].accepted").value(false))
+                .andExpect(jsonPath("[1].error").value("Isbn duplicado no lote."));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros enviados como ndjson, rejeitando linhas invalidas")
+    public void importBooksStreamTest() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String ndjson = mapper.writeValueAsString(createNewBook()) + "\n{invalid\n";
+
+        BDDMockito.given(service.importBooks(Mockito.anyList())).willReturn(Arrays.asList(
+                BookImportResultDto.builder().index(0).isbn("123").accepted(true).id(1L).build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+                .contentType(BookController.NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].accepted").value(true))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].error").value("Invalid JSON"));
+    }
+
     private BookDto createNewBook() {
         return BookDto.builder().author("Autor")
                 .title("Meu livro")
@@ -1,12 +1,18 @@
 package com.library.library.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.library.api.dto.LoanCartDto;
 import com.library.library.api.dto.LoanDto;
 import com.library.library.api.dto.LoanFilterDto;
+import com.library.library.api.dto.LoanStatisticsDto;
+import com.library.library.api.dto.ReturnLoansDto;
 import com.library.library.api.dto.ReturnedLoanDto;
 import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.mapper.BookMapperImpl;
+import com.library.library.api.mapper.LoanMapperImpl;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LoanListItem;
 import com.library.library.api.service.BookService;
 import com.library.library.api.service.LoanService;
 import com.library.library.api.service.LoanServiceTest;
@@ -20,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -33,13 +40,16 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class LoanControllerTest {
 
     private static final String LOAN_API = "/api/loans";
@@ -127,8 +137,7 @@ public class LoanControllerTest {
 
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        Loan loan = Loan.builder().id(1L).build();
-        BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.returnLoan(1L)).willReturn(true);
 
         MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
                 .accept(MediaType.APPLICATION_JSON)
@@ -136,7 +145,26 @@ public class LoanControllerTest {
                 .content(json);
 
         mvc.perform(requestBuilder).andExpect(status().isOk());
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.times(1)).returnLoan(1L);
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
+        Mockito.verify(loanService, Mockito.never()).update(Mockito.any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Deve aceitar a devolucao de um emprestimo ja devolvido")
+    public void returnReturnedBookTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoanDto.builder().returned(true).build());
+
+        BDDMockito.given(loanService.returnLoan(1L)).willReturn(false);
+        BDDMockito.given(loanService.getById(1L)).willReturn(Optional.of(Loan.builder().id(1L).returned(true).build()));
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(requestBuilder).andExpect(status().isOk());
+        Mockito.verify(loanService, Mockito.never()).update(Mockito.any(Loan.class));
     }
 
     @Test
@@ -157,6 +185,57 @@ public class LoanControllerTest {
         Mockito.verify(loanService, Mockito.never()).update(Mockito.any(Loan.class));
     }
 
+    @Test
+    @DisplayName("Deve emprestar os livros do carrinho informando o resultado de cada item")
+    public void checkoutTest() throws Exception {
+        LoanCartDto cart = LoanCartDto.builder().customer("Fulano").isbns(Arrays.asList("123", "456", "789")).build();
+        String json = new ObjectMapper().writeValueAsString(cart);
+
+        Book available = Book.builder().id(1L).isbn("123").build();
+        Book loaned = Book.builder().id(2L).isbn("456").build();
+        BDDMockito.given(bookService.getBooksByIsbn(Mockito.anyCollection())).willReturn(Arrays.asList(available, loaned));
+        BDDMockito.given(loanService.save(Mockito.argThat(loan -> loan != null && loan.getBook() == available)))
+                .willReturn(Loan.builder().id(10L).book(available).build());
+        BDDMockito.given(loanService.save(Mockito.argThat(loan -> loan != null && loan.getBook() == loaned)))
+                .willThrow(new BusinessException("Book already Loaned"));
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.post(LOAN_API.concat("/checkout"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(requestBuilder)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(3)))
+                .andExpect(jsonPath("[0].accepted").value(true))
+                .andExpect(jsonPath("[0].id").value(10))
+                .andExpect(jsonPath("[1].accepted").value(false))
+                .andExpect(jsonPath("[1].error").value("Book already Loaned"))
+                .andExpect(jsonPath("[2].index").value(2))
+                .andExpect(jsonPath("[2].error").value("Book not found for passed isbn"));
+        Mockito.verify(bookService, Mockito.times(1)).getBooksByIsbn(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("Deve devolver os emprestimos do lote informando os que nao estavam em aberto")
+    public void returnBooksTest() throws Exception {
+        ReturnLoansDto dto = ReturnLoansDto.builder().ids(Arrays.asList(1L, 2L, 3L)).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        BDDMockito.given(loanService.returnLoans(Mockito.anyCollection())).willReturn(Arrays.asList(1L, 3L));
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.post(LOAN_API.concat("/returns"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(requestBuilder)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("returned", Matchers.hasSize(2)))
+                .andExpect(jsonPath("notOpen", Matchers.hasSize(1)))
+                .andExpect(jsonPath("notOpen[0]").value(2));
+    }
+
     @Test
     @DisplayName("Deve filtrar os emprestimos")
     public void findLoansTest() throws Exception {
@@ -167,8 +246,9 @@ public class LoanControllerTest {
         Book book = Book.builder().id(1L).isbn("123").build();
         loan.setBook(book);
 
+        LoanListItem item = LoanServiceTest.createLoanListItem(loan.getId(), loan.getCustomer(), book.getId(), book.getIsbn());
         BDDMockito.given( loanService.find(Mockito.any(LoanFilterDto.class), Mockito.any(Pageable.class)))
-                .willReturn(new PageImpl<>(Arrays.asList(loan), PageRequest.of(0,10), 1));
+                .willReturn(new PageImpl<>(Arrays.asList(item), PageRequest.of(0,10), 1));
 
         String query = String.format("?insbn=%s&customer=%s&page=0&size=10",
                 loan.getBook().getIsbn(), loan.getCustomer());
@@ -179,10 +259,58 @@ public class LoanControllerTest {
         mvc.perform(requestBuilder)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].bookDto.isbn").value("123"))
                 .andExpect(jsonPath("totalElements").value(1))
                 .andExpect(jsonPath("pageable.pageSize").value(10))
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Deve exportar os emprestimos em ndjson")
+    public void exportLoansTest() throws Exception {
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1L);
+        loan.setBook(Book.builder().id(1L).isbn("123").build());
+        Loan other = LoanServiceTest.createLoan();
+        other.setId(2L);
+        other.setBook(Book.builder().id(2L).isbn("456").build());
+
+        Mockito.doAnswer(invocation -> {
+            Consumer<Loan> consumer = invocation.getArgument(0);
+            consumer.accept(loan);
+            consumer.accept(other);
+            return null;
+        }).when(loanService).exportAll(Mockito.any());
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(LOAN_API.concat("/export"))
+                .accept("application/x-ndjson");
+
+        String body = mvc.perform(requestBuilder)
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
 
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(new ObjectMapper().readValue(lines[1], LoanDto.class).getIsbn()).isEqualTo("456");
+    }
+
+    @Test
+    @DisplayName("Deve retornar as estatisticas de emprestimos")
+    public void statisticsTest() throws Exception {
+        BDDMockito.given(loanService.getStatistics()).willReturn(LoanStatisticsDto.builder()
+                .totalLoans(10).activeLoans(4).overdueLoans(1).booksLoaned(3).build());
+        BDDMockito.given(loanService.countActiveLoansOf("Fulano")).willReturn(2L);
+
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/statistics")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalLoans").value(10))
+                .andExpect(jsonPath("activeLoans").value(4))
+                .andExpect(jsonPath("overdueLoans").value(1));
+
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/statistics/customers/Fulano")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("key").value("Fulano"))
+                .andExpect(jsonPath("loans").value(2));
+    }
 }
@@ -0,0 +1,121 @@
+package com.library.library.api.service;
+
+import com.library.library.api.model.Book;
+import com.library.library.config.CacheConfig;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookSecondLevelCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Deve obter o livro pelo id e pelo isbn a partir do cache de segundo nivel")
+    public void cacheBookByIdAndIsbnTest(){
+        Book book = service.save(createNewBook("cache-001"));
+        statistics().clear();
+
+        service.getById(book.getId());
+        service.getById(book.getId());
+        service.getBookByIsbn(book.getIsbn());
+        service.getBookByIsbn(book.getIsbn());
+
+        assertThat(secondLevelCache().containsEntity(Book.class, book.getId())).isTrue();
+        assertThat(statistics().getCacheRegionStatistics(Book.CACHE_REGION).getHitCount()).isGreaterThanOrEqualTo(1);
+        assertThat(statistics().getNaturalIdCacheHitCount()).isGreaterThanOrEqualTo(1);
+        assertThat(service.getBookByIsbn(book.getIsbn()).get().getId()).isEqualTo(book.getId());
+    }
+
+    @Test
+    @DisplayName("Deve atualizar o livro em cache ao atualizar um livro")
+    public void invalidateOnUpdateTest(){
+        Book book = service.save(createNewBook("cache-002"));
+        service.getById(book.getId());
+        service.getBookByIsbn(book.getIsbn());
+
+        book.setTitle("Estrada longa");
+        service.update(book);
+
+        assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Estrada longa");
+        assertThat(service.getBookByIsbn(book.getIsbn()).get().getTitle()).isEqualTo("Estrada longa");
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o livro em cache ao alterar parcialmente um livro")
+    public void invalidateOnPatchTest(){
+        Book book = service.save(createNewBook("cache-003"));
+        service.getById(book.getId());
+
+        service.patch(book.getId(), null, Book.builder().author("Ciclano").build());
+
+        Book patched = service.getById(book.getId()).get();
+        assertThat(patched.getAuthor()).isEqualTo("Ciclano");
+        assertThat(patched.getVersion()).isEqualTo(book.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("Deve manter os demais livros em cache ao alterar parcialmente um livro")
+    public void patchKeepsOtherBooksCachedTest(){
+        Book book = service.save(createNewBook("cache-005"));
+        Book other = service.save(createNewBook("cache-006"));
+        service.getById(book.getId());
+        service.getById(other.getId());
+        statistics().clear();
+
+        service.patch(book.getId(), null, Book.builder().title("Estrada longa").build());
+
+        assertThat(statistics().getPrepareStatementCount()).isEqualTo(1);
+        assertThat(secondLevelCache().containsEntity(Book.class, book.getId())).isFalse();
+        assertThat(secondLevelCache().containsEntity(Book.class, other.getId())).isTrue();
+        assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Estrada longa");
+    }
+
+    @Test
+    @DisplayName("Deve remover o livro do cache ao deletar um livro")
+    public void invalidateOnDeleteTest(){
+        Book book = service.save(createNewBook("cache-004"));
+        service.getById(book.getId());
+        service.getBookByIsbn(book.getIsbn());
+
+        service.delete(book);
+
+        assertThat(secondLevelCache().containsEntity(Book.class, book.getId())).isFalse();
+        assertThat(cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS).get(book.getIsbn())).isNull();
+        assertThat(service.getById(book.getId()).isPresent()).isFalse();
+        assertThat(service.getBookByIsbn(book.getIsbn()).isPresent()).isFalse();
+    }
+
+    private org.hibernate.Cache secondLevelCache(){
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    private Statistics statistics(){
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Book createNewBook(String isbn) {
+        return Book.builder().title("As aventuras").author("fulano").isbn(isbn).build();
+    }
+}
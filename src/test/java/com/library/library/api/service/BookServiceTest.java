@@ -1,23 +1,34 @@
 package com.library.library.api.service;
 
+import com.library.library.api.dto.BookImportResultDto;
 import com.library.library.api.exceptions.BusinessException;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.repository.BookRepository;
 import com.library.library.api.service.implementation.BookServiceImpl;
+import com.library.library.api.service.search.BookSearchIndex;
+import com.library.library.config.CacheConfig;
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -31,12 +42,18 @@ public class BookServiceTest {
 
     BookService service;
 
+    BookSearchIndex searchIndex;
+
+    CacheManager cacheManager;
+
     @MockBean
     BookRepository repository;
 
     @BeforeEach
     public void setUp(){
-        this.service = new BookServiceImpl( repository );
+        this.searchIndex = new BookSearchIndex();
+        this.cacheManager = new ConcurrentMapCacheManager(CacheConfig.BOOK_ISBN_EXISTS);
+        this.service = new BookServiceImpl( repository, searchIndex, cacheManager );
     }
 
     @Test
@@ -82,6 +99,31 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve recusar o isbn duplicado barrado pelo banco quando o cache ainda não o conhece")
+    public void saveDuplicatedIsbnConstraintTest(){
+        Book book = createNewBook();
+        when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        when(repository.save(book)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", new SQLException(), "PUBLIC.UX_BOOK_ISBN_INDEX_1")));
+
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado.");
+        assertThat(searchIndex.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve repassar outras violacoes de integridade ao salvar um livro")
+    public void saveOtherIntegrityViolationTest(){
+        Book book = createNewBook();
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("value too long");
+        when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        when(repository.save(book)).thenThrow(violation);
+
+        assertThat(Assertions.catchThrowable(() -> service.save(book))).isSameAs(violation);
+    }
+
     @Test
     @DisplayName("Deve obter um livro pelo seu id")
     public void getByIdTest(){
@@ -201,6 +243,178 @@ public class BookServiceTest {
     }
 
 
+    @Test
+    @DisplayName("Deve filtrar livros por titulo usando o indice de busca")
+    public void findBooksByIndexTest(){
+        Book book = createNewBook();
+        when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+        when(repository.save(book)).thenReturn(Book.builder().id(1L)
+                                                        .title(book.getTitle())
+                                                        .author(book.getAuthor())
+                                                        .isbn(book.getIsbn())
+                                                        .build());
+        service.save(book);
+        searchIndex.markReady();
+
+        when(repository.findAllById(Arrays.asList(1L))).thenReturn(new ArrayList<>(Arrays.asList(book)));
+
+        Page<Book> books = service.find(Book.builder().title("aventu").build(), PageRequest.of(0, 10));
+
+        assertThat(books.getTotalElements()).isEqualTo(1);
+        assertThat(books.getContent()).containsExactly(book);
+        verify(repository, never()).findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar uma pagina vazia quando o titulo buscado nao tem letras nem digitos")
+    public void findPunctuationOnlyTitleTest(){
+        searchIndex.index(Book.builder().id(1L).title("As aventuras").author("Fulano").build());
+        searchIndex.markReady();
+
+        Page<Book> books = service.find(Book.builder().title("?!").build(), PageRequest.of(0, 10));
+
+        assertThat(books.getTotalElements()).isZero();
+        verify(repository, never()).findAllById(Mockito.anyIterable());
+        verify(repository, never()).findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class));
+    }
+
+    @Test
+    @DisplayName("Deve buscar no banco enquanto o indice de busca nao foi construido")
+    public void findBeforeIndexIsReadyTest(){
+        Page<Book> page = new PageImpl<>(Arrays.asList(createNewBook()), PageRequest.of(0, 10), 1);
+        when(repository.findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class))).thenReturn(page);
+
+        Page<Book> books = service.find(Book.builder().title("aventu").build(), PageRequest.of(0, 10));
+
+        assertThat(books.getTotalElements()).isEqualTo(1);
+        verify(repository, never()).findAllById(Mockito.anyIterable());
+    }
+
+    @Test
+    @DisplayName("Deve manter o titulo no indice de busca ao alterar apenas o autor")
+    public void patchKeepsIndexedTitleTest(){
+        Book patched = Book.builder().id(1L).title("As aventuras").author("Ciclano").isbn("123").build();
+        searchIndex.index(Book.builder().id(1L).title("As aventuras").author("Fulano").isbn("123").build());
+        when(repository.patch(1L, null, null, "Ciclano")).thenReturn(1);
+        when(repository.findAllById(Arrays.asList(1L))).thenReturn(new ArrayList<>(Arrays.asList(patched)));
+
+        searchIndex.markReady();
+
+        boolean updated = service.patch(1L, null, Book.builder().author("Ciclano").build());
+
+        assertThat(updated).isTrue();
+        assertThat(service.find(Book.builder().title("aventu").author("cicla").build(), PageRequest.of(0, 10))
+                .getContent()).containsExactly(patched);
+        verify(repository).evictFromCache(1L, null);
+        verify(repository, never()).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Deve ler o livro alterado parcialmente que ainda nao esta no indice de busca")
+    public void patchNotIndexedBookTest(){
+        Book patched = Book.builder().id(1L).title("As aventuras").author("Ciclano").isbn("123").build();
+        when(repository.patch(1L, null, null, "Ciclano")).thenReturn(1);
+        when(repository.findById(1L)).thenReturn(Optional.of(patched));
+
+        boolean updated = service.patch(1L, null, Book.builder().author("Ciclano").build());
+
+        assertThat(updated).isTrue();
+        assertThat(searchIndex.search("aventu", "cicla")).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Nao deve tocar no cache nem no indice quando nenhum livro foi alterado")
+    public void patchNotFoundTest(){
+        when(repository.patch(1L, 2L, "As aventuras", null)).thenReturn(0);
+
+        boolean updated = service.patch(1L, 2L, Book.builder().title("As aventuras").build());
+
+        assertThat(updated).isFalse();
+        assertThat(searchIndex.size()).isZero();
+        verify(repository, never()).evictFromCache(Mockito.anyLong(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve importar livros rejeitando isbns ja cadastrados ou repetidos")
+    public void importBooksTest(){
+        Book first = Book.builder().title("As aventuras").author("fulano").isbn("123").build();
+        Book existing = Book.builder().title("Estrada longa").author("ciclano").isbn("456").build();
+        Book repeated = Book.builder().title("Outro").author("beltrano").isbn("123").build();
+        Book incomplete = Book.builder().title("Sem isbn").author("beltrano").build();
+
+        when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Arrays.asList("456"));
+        when(repository.saveAll(Arrays.asList(first))).thenReturn(Arrays.asList(Book.builder().id(1L)
+                                                        .title(first.getTitle())
+                                                        .author(first.getAuthor())
+                                                        .isbn(first.getIsbn())
+                                                        .build()));
+
+        List<BookImportResultDto> results = service.importBooks(Arrays.asList(first, existing, repeated, incomplete));
+
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).isAccepted()).isTrue();
+        assertThat(results.get(0).getId()).isEqualTo(1L);
+        assertThat(results.get(1).getError()).isEqualTo("Isbn já cadastrado.");
+        assertThat(results.get(2).getError()).isEqualTo("Isbn duplicado no lote.");
+        assertThat(results.get(3).isAccepted()).isFalse();
+        verify(repository, times(1)).findExistingIsbns(Mockito.anyCollection());
+        verify(repository, never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve indexar os livros importados e limpar o cache de isbn somente após o commit")
+    public void importBooksAfterCommitTest(){
+        Book book = Book.builder().title("As aventuras").author("fulano").isbn("123").build();
+        when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(new ArrayList<>());
+        when(repository.saveAll(Arrays.asList(book))).thenReturn(Arrays.asList(Book.builder().id(1L)
+                                                        .title(book.getTitle())
+                                                        .author(book.getAuthor())
+                                                        .isbn(book.getIsbn())
+                                                        .build()));
+        cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS).put("123", false);
+        cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS).put("456", true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.importBooks(Arrays.asList(book));
+
+            assertThat(searchIndex.size()).isZero();
+            assertThat(cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS).get("123")).isNotNull();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(searchIndex.size()).isEqualTo(1);
+        assertThat(cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS).get("123")).isNull();
+        assertThat(cacheManager.getCache(CacheConfig.BOOK_ISBN_EXISTS).get("456")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Não deve indexar os livros de uma importação desfeita")
+    public void importBooksRollbackTest(){
+        Book book = Book.builder().title("As aventuras").author("fulano").isbn("123").build();
+        when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(new ArrayList<>());
+        when(repository.saveAll(Arrays.asList(book))).thenReturn(Arrays.asList(Book.builder().id(1L)
+                                                        .title(book.getTitle())
+                                                        .author(book.getAuthor())
+                                                        .isbn(book.getIsbn())
+                                                        .build()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.importBooks(Arrays.asList(book));
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(searchIndex.size()).isZero();
+    }
+
     @Test
     @DisplayName("Deve obter um livro pelo isbn")
     public void getBookByIsbnTest(){
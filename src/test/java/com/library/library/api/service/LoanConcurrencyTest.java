@@ -0,0 +1,92 @@
+package com.library.library.api.service;
+
+import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.BookRepository;
+import com.library.library.api.model.repository.LoanRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class LoanConcurrencyTest {
+
+    private static final int BOOKS = 50;
+    private static final int ATTEMPTS_PER_BOOK = 40;
+    private static final int THREADS = 32;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Test
+    @DisplayName("Deve permitir apenas um emprestimo por livro com milhares de requisicoes concorrentes")
+    public void oneWinnerPerBookTest() throws Exception {
+        List<Book> books = bookRepository.saveAll(IntStream.range(0, BOOKS)
+                .mapToObj(i -> Book.builder().title("Livro " + i).author("Autor").isbn("concurrent-" + i).build())
+                .collect(Collectors.toList()));
+
+        Map<Long, AtomicInteger> winners = new ConcurrentHashMap<>();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int attempt = 0; attempt < ATTEMPTS_PER_BOOK; attempt++) {
+                for (Book book : books) {
+                    String customer = "Cliente " + attempt;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            loanService.save(Loan.builder().book(book).customer(customer).loanDate(LocalDate.now()).build());
+                            winners.computeIfAbsent(book.getId(), id -> new AtomicInteger()).incrementAndGet();
+                        } catch (BusinessException e) {
+                            rejected.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(winners).hasSize(BOOKS);
+        assertThat(winners.values()).allMatch(count -> count.get() == 1);
+        assertThat(rejected.get()).isEqualTo(BOOKS * (ATTEMPTS_PER_BOOK - 1));
+        for (Book book : books) {
+            assertThat(loanRepository.existsByBookAndNotReturned(book)).isTrue();
+        }
+    }
+}
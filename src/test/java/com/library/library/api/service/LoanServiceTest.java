@@ -1,28 +1,42 @@
 package com.library.library.api.service;
 
 import com.library.library.api.dto.LoanFilterDto;
+import com.library.library.api.dto.LoanStatisticsDto;
 import com.library.library.api.exceptions.BusinessException;
 import com.library.library.api.model.Book;
 import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.BookLoanCount;
+import com.library.library.api.model.repository.LoanListItem;
 import com.library.library.api.model.repository.LoanRepository;
+import com.library.library.api.model.repository.OpenLoan;
 import com.library.library.api.service.implementation.LoanServiceImpl;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -32,7 +46,7 @@ import static org.mockito.Mockito.*;
 @ActiveProfiles("test")
 public class LoanServiceTest {
 
-    private LoanService service;
+    private LoanServiceImpl service;
 
     @MockBean
     private LoanRepository repository;
@@ -59,8 +73,7 @@ public class LoanServiceTest {
                                         .book(book)
                                         .build();
 
-        when(repository.existsByBookAndNotReturned(book)).thenReturn(false);
-        when(repository.save(savingLoan)).thenReturn(savedLoan);
+        when(repository.saveAndFlush(savingLoan)).thenReturn(savedLoan);
 
         Loan loan = service.save(savingLoan);
 
@@ -68,6 +81,7 @@ public class LoanServiceTest {
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
         assertThat(loan.getBook()).isEqualTo(savedLoan.getBook());
+        assertThat(savingLoan.getActiveBookId()).isEqualTo(book.getId());
     }
 
     @Test
@@ -82,15 +96,86 @@ public class LoanServiceTest {
                 .loanDate(LocalDate.now())
                 .build();
 
-        when(repository.existsByBookAndNotReturned(book)).thenReturn(true);
+        when(repository.findOpenLoans(Mockito.anyLong(), Mockito.any(Pageable.class))).thenReturn(new SliceImpl<>(
+                Arrays.asList(openLoan(7L, book.getId(), LocalDate.now()))));
+        when(repository.existsByActiveBookId(book.getId())).thenReturn(true);
+        service.loadOpenLoans();
 
         Throwable throwable = catchThrowable(() -> service.save(savingLoan));
 
         assertThat(throwable).isInstanceOf(BusinessException.class).hasMessage("Book already Loaned");
-        verify(repository, never()).save(savingLoan);
+        verify(repository, never()).saveAndFlush(savingLoan);
 
     }
 
+    @Test
+    @DisplayName("Deve emprestar o livro devolvido por outra instancia mesmo marcado como emprestado em memoria")
+    public void staleLoanedBookSaveTest(){
+        Book book = Book.builder().id(1L).build();
+        Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+
+        when(repository.findOpenLoans(Mockito.anyLong(), Mockito.any(Pageable.class))).thenReturn(new SliceImpl<>(
+                Arrays.asList(openLoan(7L, book.getId(), LocalDate.now()))));
+        when(repository.existsByActiveBookId(book.getId())).thenReturn(false);
+        when(repository.saveAndFlush(savingLoan)).thenReturn(Loan.builder().id(8L).book(book)
+                .customer("Fulano").loanDate(LocalDate.now()).build());
+        service.loadOpenLoans();
+
+        Loan loan = service.save(savingLoan);
+
+        assertThat(loan.getId()).isEqualTo(8L);
+        verify(repository).saveAndFlush(savingLoan);
+    }
+
+    @Test
+    @DisplayName("Deve recusar o emprestimo quando o banco rejeita um segundo emprestimo ativo do livro")
+    public void activeLoanConstraintTest(){
+        Loan savingLoan = createLoan();
+
+        when(repository.saveAndFlush(savingLoan)).thenThrow(constraintViolation(Loan.ACTIVE_BOOK_CONSTRAINT));
+        when(repository.existsByActiveBookId(Mockito.anyLong())).thenReturn(true);
+
+        Throwable throwable = catchThrowable(() -> service.save(savingLoan));
+
+        assertThat(throwable).isInstanceOf(BusinessException.class).hasMessage("Book already Loaned");
+        assertThat(catchThrowable(() -> service.save(createLoan()))).isInstanceOf(BusinessException.class);
+        verify(repository, times(1)).saveAndFlush(Mockito.any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Deve repassar outras violacoes de integridade sem marcar o livro como emprestado")
+    public void otherIntegrityViolationTest(){
+        Loan savingLoan = createLoan();
+        DataIntegrityViolationException violation = constraintViolation("fk_loan_book");
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenThrow(violation);
+
+        assertThat(catchThrowable(() -> service.save(savingLoan))).isSameAs(violation);
+        assertThat(catchThrowable(() -> service.save(createLoan()))).isSameAs(violation);
+        verify(repository, times(2)).saveAndFlush(Mockito.any(Loan.class));
+        verify(repository, never()).existsByActiveBookId(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro para novo emprestimo apos a devolucao")
+    public void returnReleasesBookTest(){
+        Loan loan = createLoan();
+        AtomicLong ids = new AtomicLong();
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan saving = invocation.getArgument(0);
+            saving.setId(ids.incrementAndGet());
+            return saving;
+        });
+        service.save(loan);
+
+        loan.setReturned(true);
+        service.update(loan);
+        Loan second = service.save(createLoan());
+
+        assertThat(loan.getActiveBookId()).isNull();
+        assertThat(second.getActiveBookId()).isEqualTo(loan.getBook().getId());
+        verify(repository, never()).existsByBookAndNotReturned(Mockito.any(Book.class));
+    }
+
     @Test
     @DisplayName("Deve retornar um livro pelo seu id")
     public void findByIdTest(){
@@ -119,14 +204,29 @@ public class LoanServiceTest {
         loan.setId(id);
         loan.setReturned(true);
 
-        when(repository.save(loan)).thenReturn(loan);
+        when(repository.saveAndFlush(loan)).thenReturn(loan);
         Loan updateLoan = service.update(loan);
 
         assertThat(updateLoan.getReturned()).isTrue();
-        verify(repository, times(1)).save(loan);
+        assertThat(updateLoan.getActiveBookId()).isNull();
+        verify(repository, times(1)).saveAndFlush(loan);
 
     }
 
+    @Test
+    @DisplayName("Nao deve reabrir um emprestimo devolvido")
+    public void reopenReturnedLoanTest(){
+        Loan loan = createLoan();
+        loan.setId(1L);
+        loan.setReturned(false);
+
+        Throwable exception = catchThrowable(() -> service.update(loan));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Loan already returned");
+        verify(repository, never()).save(Mockito.any(Loan.class));
+        verify(repository, never()).saveAndFlush(Mockito.any(Loan.class));
+    }
+
     @Test
     @DisplayName("Deve filtrar uma lista de livros pelas propriedades")
     public void findBooksTest(){
@@ -138,21 +238,257 @@ public class LoanServiceTest {
 
         PageRequest pageRequest = PageRequest.of(0,10);
 
-        List<Loan> list = Arrays.asList(loan);
-        Page<Loan> loanPage = new PageImpl<>(list, pageRequest, 1);
+        LoanListItem item = createLoanListItem(id, loan.getCustomer(), 1L, "123");
+        Page<LoanListItem> loanPage = new PageImpl<>(Arrays.asList(item), pageRequest, 1);
 
         when(repository.findByBookIsbnOrCustomer(Mockito.anyString(),Mockito.anyString(), Mockito.any(PageRequest.class)))
                 .thenReturn(loanPage);
 
-        Page<Loan> loans = service.find(filter, pageRequest);
+        Page<LoanListItem> loans = service.find(filter, pageRequest);
 
         assertThat(loans.getTotalElements()).isEqualTo(1);
-        assertThat(loans.getContent()).isEqualTo(list);
+        assertThat(loans.getContent()).containsExactly(item);
         assertThat(loans.getPageable().getPageNumber()).isEqualTo(0);
         assertThat(loans.getPageable().getPageSize()).isEqualTo(10);
 
     }
 
+    @Test
+    @DisplayName("Deve disparar os emprestimos vencidos e ignorar os devolvidos")
+    public void pollOverdueLoansTest(){
+        AtomicLong ids = new AtomicLong();
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan saving = invocation.getArgument(0);
+            saving.setId(ids.incrementAndGet());
+            return saving;
+        });
+        Loan overdue = createLoan();
+        overdue.setLoanDate(LocalDate.now().minusDays(10));
+        service.save(overdue);
+
+        Loan onTime = createLoan();
+        onTime.getBook().setId(2L);
+        service.save(onTime);
+
+        Loan returned = createLoan();
+        returned.getBook().setId(3L);
+        service.save(returned);
+        returned.setReturned(true);
+        service.update(returned);
+
+        assertThat(service.pollOverdueLoans(10)).containsExactly(overdue.getId());
+        assertThat(service.pollOverdueLoans(10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve manter as estatisticas de emprestimos sem consultar o banco")
+    public void statisticsTest(){
+        AtomicLong ids = new AtomicLong();
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan saving = invocation.getArgument(0);
+            saving.setId(ids.incrementAndGet());
+            return saving;
+        });
+        Loan overdue = createLoan();
+        overdue.setLoanDate(LocalDate.now().minusDays(10));
+        service.save(overdue);
+        Loan other = createLoan();
+        other.getBook().setId(2L);
+        service.save(other);
+        service.pollOverdueLoans(10);
+
+        overdue.setReturned(true);
+        service.update(overdue);
+        Loan again = createLoan();
+        service.save(again);
+
+        LoanStatisticsDto statistics = service.getStatistics();
+        assertThat(statistics.getTotalLoans()).isEqualTo(3);
+        assertThat(statistics.getActiveLoans()).isEqualTo(2);
+        assertThat(statistics.getOverdueLoans()).isZero();
+        assertThat(service.countLoansOfBook(1L)).isEqualTo(2);
+        assertThat(service.countActiveLoansOf("Fulano")).isEqualTo(2);
+        verify(repository, never()).count();
+    }
+
+    @Test
+    @DisplayName("Deve devolver os emprestimos em aberto do lote com um unico update")
+    public void returnLoansTest(){
+        AtomicLong ids = new AtomicLong();
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan saving = invocation.getArgument(0);
+            saving.setId(ids.incrementAndGet());
+            return saving;
+        });
+        Loan first = service.save(createLoan());
+        Loan second = createLoan();
+        second.getBook().setId(2L);
+        service.save(second);
+        List<OpenLoan> open = Arrays.asList(openLoan(first.getId(), 1L, LocalDate.now()),
+                openLoan(second.getId(), 2L, LocalDate.now()));
+        when(repository.findOpenLoansByIds(Mockito.anyCollection())).thenReturn(open);
+
+        List<Long> returned = service.returnLoans(Arrays.asList(first.getId(), second.getId(), 99L));
+
+        assertThat(returned).containsExactly(first.getId(), second.getId());
+        verify(repository).returnLoans(Arrays.asList(first.getId(), second.getId()));
+        assertThat(service.getStatistics().getActiveLoans()).isZero();
+        assertThat(service.pollOverdueLoans(10)).isEmpty();
+        assertThat(service.save(createLoan()).getActiveBookId()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Deve devolver um emprestimo com um unico update sem carregar a entidade")
+    public void returnLoanTest(){
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan saving = invocation.getArgument(0);
+            saving.setId(1L);
+            return saving;
+        });
+        service.save(createLoan());
+        when(repository.findOpenLoansByIds(Collections.singletonList(1L)))
+                .thenReturn(Collections.singletonList(openLoan(1L, 1L, LocalDate.now())));
+        when(repository.returnLoans(Collections.singletonList(1L))).thenReturn(1, 0);
+
+        assertThat(service.returnLoan(1L)).isTrue();
+        assertThat(service.returnLoan(1L)).isFalse();
+
+        assertThat(service.getStatistics().getActiveLoans()).isZero();
+        assertThat(service.save(createLoan()).getActiveBookId()).isEqualTo(1L);
+        verify(repository, never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Nao deve executar o update quando nenhum emprestimo do lote esta em aberto")
+    public void returnLoansNoneOpenTest(){
+        when(repository.findOpenLoansByIds(Mockito.anyCollection())).thenReturn(Collections.emptyList());
+
+        List<Long> returned = service.returnLoans(Arrays.asList(1L, 2L));
+
+        assertThat(returned).isEmpty();
+        verify(repository, never()).returnLoans(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir as estatisticas a partir do banco")
+    public void reconcileStatisticsTest(){
+        BookLoanCount count = new BookLoanCount() {
+            @Override
+            public Long getBookId() {
+                return 1L;
+            }
+
+            @Override
+            public Long getTotal() {
+                return 5L;
+            }
+        };
+        when(repository.countLoansPerBook()).thenReturn(Arrays.asList(count));
+        when(repository.findOpenLoans(Mockito.anyLong(), Mockito.any(Pageable.class))).thenReturn(new SliceImpl<>(
+                Arrays.asList(openLoan(7L, 1L, LocalDate.now().minusDays(10)))));
+
+        service.reconcileStatistics();
+
+        LoanStatisticsDto statistics = service.getStatistics();
+        assertThat(statistics.getTotalLoans()).isEqualTo(5);
+        assertThat(statistics.getActiveLoans()).isEqualTo(1);
+        assertThat(statistics.getOverdueLoans()).isEqualTo(1);
+        assertThat(statistics.getReconciledAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Nao deve contar como atrasado o emprestimo devolvido depois da reconciliacao")
+    public void returnAfterReconcileTest(){
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan saving = invocation.getArgument(0);
+            saving.setId(1L);
+            return saving;
+        });
+        Loan overdue = createLoan();
+        overdue.setLoanDate(LocalDate.now().minusDays(10));
+        service.save(overdue);
+        when(repository.countLoansPerBook()).thenReturn(Collections.emptyList());
+        when(repository.findOpenLoans(Mockito.anyLong(), Mockito.any(Pageable.class))).thenReturn(new SliceImpl<>(
+                Arrays.asList(openLoan(1L, 1L, overdue.getLoanDate()))));
+        service.reconcileStatistics();
+        assertThat(service.getStatistics().getOverdueLoans()).isEqualTo(1);
+
+        overdue.setReturned(true);
+        service.update(overdue);
+
+        assertThat(service.pollOverdueLoans(10)).isEmpty();
+        assertThat(service.getStatistics().getOverdueLoans()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar na carga os emprestimos vencidos ainda nao notificados")
+    public void loadOpenLoansQueuesUnnotifiedTest(){
+        when(repository.countLoansPerBook()).thenReturn(Collections.emptyList());
+        when(repository.findOpenLoans(Mockito.anyLong(), Mockito.any(Pageable.class))).thenReturn(new SliceImpl<>(
+                Arrays.asList(openLoan(7L, 1L, LocalDate.now().minusDays(10)),
+                        openLoan(8L, 2L, LocalDate.now().minusDays(10), true),
+                        openLoan(9L, 3L, LocalDate.now()))));
+
+        service.loadOpenLoans();
+
+        assertThat(service.pollOverdueLoans(10)).containsExactly(7L);
+        assertThat(service.getStatistics().getOverdueLoans()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve reenfileirar os emprestimos vencidos que nao foram notificados")
+    public void queueUnnotifiedOverdueLoansTest(){
+        when(repository.findUnnotifiedOverdueLoans(Mockito.any(LocalDate.class), Mockito.anyLong(), Mockito.any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(openLoan(7L, 1L, LocalDate.now().minusDays(10)))));
+
+        assertThat(service.queueUnnotifiedOverdueLoans()).isEqualTo(1);
+        assertThat(service.pollOverdueLoans(10)).containsExactly(7L);
+    }
+
+    @Test
+    @DisplayName("Deve retornar os itens apenas dos emprestimos marcados como notificados")
+    public void claimOverdueLoansTest(){
+        when(repository.lockUnnotifiedOpenLoans(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(1L));
+
+        service.claimOverdueLoans(Arrays.asList(1L, 2L));
+
+        verify(repository).markOverdueNotified(Arrays.asList(1L));
+        verify(repository).findLateLoanItemsByIds(Arrays.asList(1L));
+    }
+
+    private static OpenLoan openLoan(Long id, Long bookId, LocalDate loanDate){
+        return openLoan(id, bookId, loanDate, false);
+    }
+
+    private static OpenLoan openLoan(Long id, Long bookId, LocalDate loanDate, boolean overdueNotified){
+        return new OpenLoan() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getBookId() {
+                return bookId;
+            }
+
+            @Override
+            public String getCustomer() {
+                return "Fulano";
+            }
+
+            @Override
+            public LocalDate getLoanDate() {
+                return loanDate;
+            }
+
+            @Override
+            public Boolean getOverdueNotified() {
+                return overdueNotified;
+            }
+        };
+    }
+
     public static Loan createLoan(){
         Book book = Book.builder().id(1L).build();
         String customer = "Fulano";
@@ -162,4 +498,20 @@ public class LoanServiceTest {
                 .loanDate(LocalDate.now())
                 .build();
     }
+
+    private static DataIntegrityViolationException constraintViolation(String constraint){
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", new SQLException(), constraint));
+    }
+
+    public static LoanListItem createLoanListItem(Long id, String customer, Long bookId, String isbn){
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("customer", customer);
+        row.put("bookId", bookId);
+        row.put("title", "As aventuras");
+        row.put("author", "Fulano");
+        row.put("isbn", isbn);
+        return new SpelAwareProxyProjectionFactory().createProjection(LoanListItem.class, row);
+    }
 }
@@ -0,0 +1,51 @@
+package com.library.library.api.service.concurrent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AtomicBitSetTest {
+
+    @Test
+    @DisplayName("Deve adicionar, consultar e remover valores, crescendo quando necessario")
+    public void addContainsRemoveTest(){
+        AtomicBitSet set = new AtomicBitSet();
+
+        assertThat(set.add(3L)).isTrue();
+        assertThat(set.add(3L)).isFalse();
+        assertThat(set.add(1_000_000L)).isTrue();
+
+        assertThat(set.contains(3L)).isTrue();
+        assertThat(set.contains(1_000_000L)).isTrue();
+        assertThat(set.contains(4L)).isFalse();
+        assertThat(set.contains(50_000_000L)).isFalse();
+
+        assertThat(set.remove(3L)).isTrue();
+        assertThat(set.remove(3L)).isFalse();
+        assertThat(set.cardinality()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve manter todos os valores adicionados em paralelo enquanto cresce")
+    public void concurrentAddTest() throws InterruptedException {
+        AtomicBitSet set = new AtomicBitSet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            long offset = thread;
+            executor.submit(() -> {
+                for (long value = offset; value < 200_000L; value += 8) {
+                    set.add(value);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertThat(set.cardinality()).isEqualTo(200_000);
+    }
+}
@@ -0,0 +1,28 @@
+package com.library.library.api.service.mail;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MailTemplatesTest {
+
+    MailTemplates templates = new MailTemplates();
+
+    @Test
+    @DisplayName("Deve renderizar o resumo de emprestimos atrasados com todos os titulos do cliente")
+    public void renderLateLoansDigestTest(){
+        LateLoanDigest digest = new LateLoanDigest("fulano@email.com", "Fulano");
+        digest.add("As aventuras", LocalDate.of(2021, 1, 1));
+        digest.add("O retorno", LocalDate.of(2021, 1, 2));
+
+        String body = templates.render(MailTemplates.LATE_LOANS, digest,
+                Collections.singletonMap("message", "Livro atrasado"));
+
+        assertThat(body).contains("Olá Fulano", "Livro atrasado",
+                "- As aventuras (emprestado em 2021-01-01)", "- O retorno (emprestado em 2021-01-02)");
+    }
+}
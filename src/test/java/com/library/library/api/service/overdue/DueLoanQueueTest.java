@@ -0,0 +1,63 @@
+package com.library.library.api.service.overdue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DueLoanQueueTest {
+
+    @Test
+    @DisplayName("Deve disparar apenas os emprestimos vencidos, em ordem de vencimento")
+    public void pollDueInOrderTest(){
+        DueLoanQueue queue = new DueLoanQueue();
+        queue.schedule(1L, 10L, 300L);
+        queue.schedule(2L, 20L, 100L);
+        queue.schedule(3L, 30L, 200L);
+        queue.schedule(4L, 40L, 900L);
+
+        List<Long> fired = new ArrayList<>();
+        int count = queue.pollDue(300L, 10, (loanId, bookId) -> fired.add(loanId));
+
+        assertThat(count).isEqualTo(3);
+        assertThat(fired).containsExactly(2L, 3L, 1L);
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve ignorar emprestimos cancelados e respeitar o limite por chamada")
+    public void cancelAndLimitTest(){
+        DueLoanQueue queue = new DueLoanQueue();
+        queue.schedule(1L, 10L, 100L);
+        queue.schedule(2L, 20L, 100L);
+        queue.schedule(3L, 30L, 100L);
+        queue.cancel(2L);
+
+        List<Long> fired = new ArrayList<>();
+        queue.pollDue(100L, 1, (loanId, bookId) -> fired.add(loanId));
+        queue.pollDue(100L, 10, (loanId, bookId) -> fired.add(loanId));
+
+        assertThat(fired).containsExactly(1L, 3L);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve manter a ordem com muitos emprestimos")
+    public void manyLoansTest(){
+        DueLoanQueue queue = new DueLoanQueue();
+        Random random = new Random(42);
+        for (long loanId = 1; loanId <= 10_000; loanId++) {
+            long due = random.nextInt(1_000_000);
+            queue.schedule(loanId, due, due);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        queue.pollDue(Long.MAX_VALUE, Integer.MAX_VALUE, (loanId, due) -> fired.add(due));
+
+        assertThat(fired).hasSize(10_000).isSorted();
+    }
+}
@@ -0,0 +1,105 @@
+package com.library.library.api.service.schedules;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.library.library.api.model.EmailOutbox;
+import com.library.library.api.model.EmailStatus;
+import com.library.library.api.model.repository.EmailOutboxRepository;
+import com.library.library.api.service.EmailService;
+import com.library.library.api.service.mail.LateLoanDigest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.starttls.enable=false",
+        "application.mail.outbox.poll-interval=3600000",
+        "application.mail.outbox.backoff=0s",
+        "application.mail.outbox.max-attempts=2"
+})
+public class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    EmailService emailService;
+
+    @Autowired
+    EmailOutboxDispatcher dispatcher;
+
+    @Autowired
+    EmailOutboxRepository repository;
+
+    @BeforeEach
+    public void setUp(){
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve enviar as mensagens da caixa de saida pelo smtp")
+    public void dispatchOutboxTest() throws Exception {
+        emailService.sendMails("Livro atrasado", Arrays.asList("fulano@email.com", "ciclano@email.com", "beltrano@email.com"));
+
+        int sent = dispatcher.dispatch();
+
+        assertThat(sent).isEqualTo(3);
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(3);
+        assertThat(received[0].getSubject()).isEqualTo("Livro com emprestimo atrasado");
+        assertThat(repository.countByStatus(EmailStatus.SENT)).isEqualTo(3);
+        assertThat(dispatcher.dispatch()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve enviar o resumo de atrasos de um cliente com muitos livros")
+    public void dispatchLargeDigestTest() throws Exception {
+        LateLoanDigest digest = new LateLoanDigest("fulano@email.com", "Fulano");
+        for (int i = 0; i < 200; i++) {
+            digest.add("As aventuras de um livro muito atrasado, volume " + i, LocalDate.now().minusDays(10));
+        }
+        emailService.sendLateLoanDigests("Livro atrasado", Collections.singletonList(digest));
+
+        assertThat(repository.findAll().get(0).getBody().length()).isGreaterThan(4000);
+        assertThat(dispatcher.dispatch()).isEqualTo(1);
+        assertThat(GreenMailUtil.getBody(greenMail.getReceivedMessages()[0])).contains("volume 199");
+    }
+
+    @Test
+    @DisplayName("Deve tentar novamente e marcar como falha apos o limite de tentativas")
+    public void retryAndFailTest(){
+        emailService.sendMails("Livro atrasado", Arrays.asList("fulano@email.com"));
+        greenMail.stop();
+
+        assertThat(dispatcher.dispatch()).isZero();
+        assertThat(repository.findAll().get(0).getStatus()).isEqualTo(EmailStatus.PENDING);
+
+        assertThat(dispatcher.dispatch()).isZero();
+
+        EmailOutbox email = repository.findAll().get(0);
+        assertThat(email.getStatus()).isEqualTo(EmailStatus.FAILED);
+        assertThat(email.getAttempts()).isEqualTo(2);
+        assertThat(email.getLastError()).isNotNull();
+    }
+}
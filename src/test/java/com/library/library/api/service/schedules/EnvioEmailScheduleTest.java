@@ -0,0 +1,103 @@
+package com.library.library.api.service.schedules;
+
+import com.library.library.api.model.repository.LateLoanItem;
+import com.library.library.api.service.EmailService;
+import com.library.library.api.service.LoanService;
+import com.library.library.api.service.mail.LateLoanDigest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EnvioEmailScheduleTest {
+
+    @Mock
+    LoanService loanService;
+
+    @Mock
+    EmailService emailService;
+
+    @InjectMocks
+    EnvioEmailSchedule schedule;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void setUp(){
+        ReflectionTestUtils.setField(schedule, "message", "Livro atrasado");
+        ReflectionTestUtils.setField(schedule, "chunkSize", 2);
+        ReflectionTestUtils.setField(schedule, "meterRegistry", meterRegistry);
+        schedule.registerMetrics();
+    }
+
+    @Test
+    @DisplayName("Deve enviar um resumo por cliente mesmo quando os emprestimos ficam em blocos diferentes")
+    public void sendDigestPerCustomerTest(){
+        when(loanService.getLateLoanItems("", 0L, 2)).thenReturn(new SliceImpl<>(
+                Arrays.asList(lateLoan(3L, "ciclano@email.com", "Livro A"), lateLoan(1L, "fulano@email.com", "Livro B")),
+                PageRequest.of(0, 2), true));
+        when(loanService.getLateLoanItems("fulano@email.com", 1L, 2)).thenReturn(new SliceImpl<>(
+                Arrays.asList(lateLoan(5L, "fulano@email.com", "Livro C")), PageRequest.of(0, 2), false));
+
+        schedule.sendEmailToLateLoans();
+
+        ArgumentCaptor<List<LateLoanDigest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(emailService, times(2)).sendLateLoanDigests(eq("Livro atrasado"), captor.capture());
+        verifyNoMoreInteractions(emailService);
+
+        List<LateLoanDigest> first = captor.getAllValues().get(0);
+        List<LateLoanDigest> second = captor.getAllValues().get(1);
+        assertThat(first).extracting(LateLoanDigest::getEmail).containsExactly("ciclano@email.com");
+        assertThat(second).extracting(LateLoanDigest::getEmail).containsExactly("fulano@email.com");
+        assertThat(second.get(0).getBooks()).extracting(LateLoanDigest.LateBook::getTitle)
+                .containsExactly("Livro B", "Livro C");
+        assertThat(meterRegistry.get("library.lateloans.job").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("library.lateloans.job.last.emails").gauge().value()).isEqualTo(2);
+    }
+
+    private LateLoanItem lateLoan(Long id, String email, String title){
+        return new LateLoanItem() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getCustomer() {
+                return "Cliente " + id;
+            }
+
+            @Override
+            public String getCustomerEmail() {
+                return email;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public LocalDate getLoanDate() {
+                return LocalDate.now().minusDays(5);
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.library.library.api.service.schedules;
+
+import com.library.library.api.model.repository.LateLoanItem;
+import com.library.library.api.service.EmailService;
+import com.library.library.api.service.LoanService;
+import com.library.library.api.service.mail.LateLoanDigest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OverdueLoanTickerTest {
+
+    @Mock
+    LoanService loanService;
+
+    @Mock
+    EmailService emailService;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    OverdueLoanTicker ticker;
+
+    @BeforeEach
+    public void setUp(){
+        ReflectionTestUtils.setField(ticker, "message", "Livro atrasado");
+        ReflectionTestUtils.setField(ticker, "batchSize", 2);
+        ReflectionTestUtils.setField(ticker, "transactionTemplate", new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    @DisplayName("Deve notificar os emprestimos que venceram desde o ultimo ciclo")
+    public void notifyOverdueLoansTest(){
+        when(loanService.pollOverdueLoans(2)).thenReturn(Arrays.asList(1L, 2L), Arrays.asList(3L));
+        when(loanService.claimOverdueLoans(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                lateLoan(1L, "fulano@email.com", "Livro A"), lateLoan(2L, "fulano@email.com", "Livro B")));
+        when(loanService.claimOverdueLoans(Arrays.asList(3L))).thenReturn(Collections.emptyList());
+
+        int fired = ticker.tick();
+
+        ArgumentCaptor<List<LateLoanDigest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(emailService).sendLateLoanDigests(eq("Livro atrasado"), captor.capture());
+        verifyNoMoreInteractions(emailService);
+        assertThat(fired).isEqualTo(3);
+        assertThat(captor.getValue()).hasSize(1);
+        assertThat(captor.getValue().get(0).getBooks()).extracting(LateLoanDigest.LateBook::getTitle)
+                .containsExactly("Livro A", "Livro B");
+    }
+
+    @Test
+    @DisplayName("Nao deve consultar o banco quando nenhum emprestimo venceu")
+    public void nothingDueTest(){
+        when(loanService.pollOverdueLoans(2)).thenReturn(Collections.emptyList());
+
+        assertThat(ticker.tick()).isZero();
+
+        verify(loanService, never()).claimOverdueLoans(anyCollection());
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    @DisplayName("Deve desfazer a marcacao quando a gravacao das notificacoes falha")
+    public void failedBatchTest(){
+        when(loanService.pollOverdueLoans(2)).thenReturn(Arrays.asList(1L));
+        when(loanService.claimOverdueLoans(Arrays.asList(1L))).thenReturn(Arrays.asList(
+                lateLoan(1L, "fulano@email.com", "Livro A")));
+        doThrow(new IllegalStateException("outbox")).when(emailService).sendLateLoanDigests(anyString(), anyList());
+
+        assertThat(ticker.tick()).isZero();
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    private LateLoanItem lateLoan(Long id, String email, String title){
+        return new LateLoanItem() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getCustomer() {
+                return "Fulano";
+            }
+
+            @Override
+            public String getCustomerEmail() {
+                return email;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public LocalDate getLoanDate() {
+                return LocalDate.now().minusDays(5);
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.library.library.api.service.search;
+
+import com.library.library.api.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        index = new BookSearchIndex();
+        index.index(Book.builder().id(1L).title("As Aventuras de Tom").author("Mark Twain").build());
+        index.index(Book.builder().id(2L).title("Grande Sertão: Veredas").author("João Guimarães Rosa").build());
+        index.index(Book.builder().id(3L).title("A Estrada Longa").author("Fulano").build());
+    }
+
+    @Test
+    @DisplayName("Deve encontrar livros por prefixo, ignorando caixa e acentos")
+    public void prefixSearchTest(){
+        assertThat(index.search("aven", null)).containsExactly(1L);
+        assertThat(index.search("SERTAO", null)).containsExactly(2L);
+        assertThat(index.search(null, "guimaraes")).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve exigir que todos os termos sejam encontrados")
+    public void allTermsSearchTest(){
+        assertThat(index.search("estrada longa", null)).containsExactly(3L);
+        assertThat(index.search("estrada tom", null)).isEmpty();
+        assertThat(index.search("a", "fulano")).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Deve manter o indice atualizado ao alterar e remover livros")
+    public void updateAndRemoveTest(){
+        index.index(Book.builder().id(1L).title("Memorias Postumas").author("Machado").build());
+        index.remove(3L);
+
+        assertThat(index.search("aventuras", null)).isEmpty();
+        assertThat(index.search("memo", null)).containsExactly(1L);
+        assertThat(index.search("estrada", null)).isEmpty();
+
+        assertThat(index.search(null, null)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Deve substituir os termos de um livro reindexado")
+    public void reindexTest(){
+        index.index(Book.builder().id(3L).title("Caminho curto").author("Fulano").build());
+
+        assertThat(index.search("estrada", null)).isEmpty();
+        assertThat(index.search("caminho", null)).containsExactly(3L);
+        assertThat(index.search("caminho", "fulano")).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Deve reindexar apenas os campos alterados de um livro")
+    public void updateTest(){
+        assertThat(index.update(3L, null, "Ciclano")).isTrue();
+
+        assertThat(index.search("estrada", "ciclano")).containsExactly(3L);
+        assertThat(index.search(null, "fulano")).doesNotContain(3L);
+        assertThat(index.update(9L, "Livro novo", null)).isFalse();
+        assertThat(index.search("livro", null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Nao deve encontrar livros quando a busca nao tem letras nem digitos")
+    public void punctuationOnlySearchTest(){
+        assertThat(index.search("?!", null)).isEmpty();
+        assertThat(index.search(null, "...")).isEmpty();
+        assertThat(index.search("  ", null)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve unir os termos de mesmo prefixo sem repetir livros")
+    public void prefixUnionTest(){
+        index.index(Book.builder().id(4L).title("Estrela e estrada").author("Fulano").build());
+        index.index(Book.builder().id(5L).title("Estrelas").author("Ciclano").build());
+
+        assertThat(index.search("estr", null)).containsExactly(3L, 4L, 5L);
+        assertThat(index.search("estr", "fulano")).containsExactly(3L, 4L);
+        assertThat(index.search("estrel", "ciclano")).containsExactly(5L);
+    }
+}
@@ -0,0 +1,85 @@
+package com.library.library.config;
+
+import com.library.library.api.model.Book;
+import com.library.library.api.service.BookService;
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"application.datasource.replica.enabled=true",
+        "application.datasource.replica.url=" + ReplicaDataSourceTest.REPLICA_URL})
+public class ReplicaDataSourceTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    private static JdbcTemplate replica;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    public static void createReplica(){
+        DriverManagerDataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+    }
+
+    @Test
+    @DisplayName("Deve ler os livros da replica nas consultas somente leitura sem guarda-los no cache")
+    public void readOnlyQueriesUseReplicaTest(){
+        replica.update("insert into book (id, title, author, isbn, version) values (?, ?, ?, ?, 0)",
+                900001L, "Somente na replica", "Fulano", "replica-001");
+
+        assertThat(bookService.scroll(900000L, 10).getContent()).extracting(Book::getTitle)
+                .containsExactly("Somente na replica");
+        assertThat(countByIsbn(new JdbcTemplate(dataSource), "replica-001")).isZero();
+        assertThat(entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                .containsEntity(Book.class, 900001L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve ler do banco primario os livros que alimentam escritas")
+    public void writeFeedingReadsUsePrimaryTest(){
+        Book book = bookService.save(Book.builder().title("As aventuras").author("Fulano").isbn("replica-003").build());
+
+        assertThat(bookService.getById(book.getId())).isPresent();
+        assertThat(bookService.getBookByIsbn("replica-003")).isPresent();
+        assertThat(bookService.getBooksByIsbn(Collections.singleton("replica-003"))).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Deve gravar os livros apenas no banco primario")
+    public void writesUsePrimaryTest(){
+        bookService.save(Book.builder().title("As aventuras").author("Fulano").isbn("replica-002").build());
+
+        assertThat(countByIsbn(new JdbcTemplate(dataSource), "replica-002")).isEqualTo(1);
+        assertThat(countByIsbn(replica, "replica-002")).isZero();
+    }
+
+    private static long countByIsbn(JdbcTemplate jdbcTemplate, String isbn){
+        return jdbcTemplate.queryForObject("select count(*) from book where isbn = ?", Long.class, isbn);
+    }
+}
@@ -0,0 +1,60 @@
+package com.library.library.config;
+
+import com.library.library.api.exceptions.BusinessException;
+import com.library.library.api.model.Book;
+import com.library.library.api.model.Loan;
+import com.library.library.api.model.repository.LoanRepository;
+import com.library.library.api.service.LoanService;
+import com.library.library.api.service.implementation.LoanServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.when;
+
+public class ServiceMetricsAspectTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    LoanRepository repository = Mockito.mock(LoanRepository.class);
+    LoanService service;
+
+    @BeforeEach
+    public void setUp(){
+        AspectJProxyFactory factory = new AspectJProxyFactory(new LoanServiceImpl(repository));
+        factory.addAspect(new ServiceMetricsAspect(registry));
+        service = factory.getProxy();
+    }
+
+    @Test
+    @DisplayName("Deve medir o tempo dos metodos de servico com o resultado da chamada")
+    public void timeServiceMethodsTest(){
+        when(repository.saveAndFlush(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            loan.setId(1L);
+            return loan;
+        });
+        when(repository.existsByActiveBookId(1L)).thenReturn(true);
+
+        service.save(loan());
+        Throwable throwable = catchThrowable(() -> service.save(loan()));
+
+        assertThat(throwable).isInstanceOf(BusinessException.class);
+        assertThat(registry.get(ServiceMetricsAspect.METRIC_NAME)
+                .tags("service", "LoanServiceImpl", "method", "save", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get(ServiceMetricsAspect.METRIC_NAME)
+                .tags("method", "save", "outcome", "business_error", "exception", "BusinessException").timer().count())
+                .isEqualTo(1);
+    }
+
+    private Loan loan(){
+        return Loan.builder().book(Book.builder().id(1L).build()).customer("Fulano").loanDate(LocalDate.now()).build();
+    }
+}
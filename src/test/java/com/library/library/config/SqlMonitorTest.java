@@ -0,0 +1,88 @@
+package com.library.library.config;
+
+import com.library.library.api.model.Book;
+import com.library.library.api.service.BookService;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"application.sql-monitor.enabled=true", "application.sql-monitor.slow-threshold=0ms"})
+public class SqlMonitorTest {
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    TopQueriesEndpoint endpoint;
+
+    @Test
+    @DisplayName("Deve ranquear as consultas executadas no endpoint topqueries")
+    @SuppressWarnings("unchecked")
+    public void topQueriesTest(){
+        endpoint.reset();
+        bookService.save(Book.builder().title("As aventuras").author("Fulano").isbn("monitor-001").build());
+        bookService.find(Book.builder().isbn("monitor-001").build(), PageRequest.of(0, 10));
+
+        Map<String, Object> top = endpoint.topQueries(5);
+
+        List<SqlStatistics.Entry> statements = (List<SqlStatistics.Entry>) top.get("statements");
+        List<SqlStatistics.Entry> queries = (List<SqlStatistics.Entry>) top.get("queries");
+        assertThat(statements).isNotEmpty();
+        assertThat(statements).anyMatch(entry -> entry.getQuery().toLowerCase().startsWith("select") && entry.getCount() > 0);
+        assertThat(queries).anyMatch(entry -> entry.getRows() >= 1);
+    }
+
+    @Test
+    @DisplayName("Deve agrupar as consultas que so diferem no tamanho da lista do IN")
+    public void inListVariantsTest(){
+        SqlStatistics statistics = new SqlStatistics(Duration.ofHours(1), 1);
+        ExecutionInfo execution = new ExecutionInfo();
+        execution.setElapsedTime(3);
+
+        statistics.afterQuery(execution, Collections.singletonList(new QueryInfo("select id from book where id in (?, ?)")));
+        statistics.afterQuery(execution, Collections.singletonList(new QueryInfo("select id from book where id IN (?,?,?,?)")));
+
+        List<SqlStatistics.Entry> top = statistics.top(5);
+        assertThat(top).hasSize(1);
+        assertThat(top.get(0).getQuery()).isEqualTo("select id from book where id in (?...)");
+        assertThat(top.get(0).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve contar o tempo de um lote uma unica vez, repartido entre os comandos")
+    public void batchElapsedTest(){
+        SqlStatistics statistics = new SqlStatistics(Duration.ofHours(1), 10);
+        ExecutionInfo execution = new ExecutionInfo();
+        execution.setElapsedTime(30);
+        execution.setResult(new int[]{1, 1, 0});
+
+        statistics.afterQuery(execution, Arrays.asList(
+                new QueryInfo("update book set title = 'A' where id = 1"),
+                new QueryInfo("update book set title = 'A' where id = 1"),
+                new QueryInfo("delete from loan where id = 2")));
+
+        List<SqlStatistics.Entry> top = statistics.top(5);
+        assertThat(top).extracting(SqlStatistics.Entry::getQuery)
+                .containsExactly("update book set title = 'A' where id = 1", "delete from loan where id = 2");
+        assertThat(top).extracting(SqlStatistics.Entry::getCount).containsExactly(1L, 1L);
+        assertThat(top).extracting(SqlStatistics.Entry::getTotalMillis).containsExactly(20L, 10L);
+        assertThat(top).extracting(SqlStatistics.Entry::getRows).containsExactly(2L, 0L);
+    }
+}
@@ -0,0 +1,110 @@
+package com.library.library.dataset;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DatasetGeneratorTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private static final String LOANS = "select cast(id_book as varchar) || ';' || customer || ';' || " +
+            "cast(loan_date as varchar) || ';' || cast(returned as varchar) from loan order by 1";
+
+    @Test
+    @DisplayName("Deve gerar os livros e emprestimos configurados")
+    public void generateTest() throws Exception {
+        JdbcTemplate jdbcTemplate = generate(properties(4));
+
+        assertThat(count(jdbcTemplate, "select count(*) from book")).isEqualTo(10_000);
+        assertThat(jdbcTemplate.queryForObject("select isbn from book where id = 42", String.class))
+                .isEqualTo(DatasetGenerator.isbn(42));
+        assertThat(count(jdbcTemplate, "select count(*) from loan where returned = true")).isEqualTo(50_000);
+        assertThat(count(jdbcTemplate, "select count(*) from loan where returned = true and active_book_id is not null")).isZero();
+
+        long open = count(jdbcTemplate, "select count(*) from loan where returned = false and active_book_id = id_book");
+        assertThat(open).isEqualTo(count(jdbcTemplate, "select count(*) from loan where returned = false"));
+        assertThat(open).isBetween(800L, 1_200L);
+
+        long overdue = count(jdbcTemplate, "select count(*) from loan where returned = false and loan_date <= ?",
+                LocalDate.now().minusDays(4));
+        assertThat((double) overdue / open).isBetween(0.1, 0.3);
+    }
+
+    @Test
+    @DisplayName("Deve concentrar os emprestimos em poucos livros e clientes")
+    public void zipfianPopularityTest() throws Exception {
+        JdbcTemplate jdbcTemplate = generate(properties(4));
+
+        long topBooks = count(jdbcTemplate, "select sum(total) from (select count(*) total from loan " +
+                "where returned = true group by id_book order by total desc limit 100)");
+        long topCustomers = count(jdbcTemplate, "select sum(total) from (select count(*) total from loan " +
+                "where returned = true group by customer order by total desc limit 10)");
+
+        assertThat(topBooks).isGreaterThan(50_000 / 4);
+        assertThat(topCustomers).isGreaterThan(50_000 / 4);
+    }
+
+    @Test
+    @DisplayName("Deve gerar os mesmos dados com a mesma semente, qualquer que seja o numero de threads")
+    public void sameSeedSameRowsTest() throws Exception {
+        List<String> parallel = generate(properties(4)).queryForList(LOANS, String.class);
+        List<String> sequential = generate(properties(1)).queryForList(LOANS, String.class);
+
+        assertThat(parallel).hasSize(sequential.size()).isEqualTo(sequential);
+    }
+
+    @Test
+    @DisplayName("Deve reiniciar a sequencia de livros depois dos ids gerados")
+    public void bookSequenceTest() throws Exception {
+        JdbcTemplate jdbcTemplate = generate(properties(4));
+
+        assertThat(count(jdbcTemplate, "select next value for book_seq")).isGreaterThan(10_000);
+    }
+
+    @Test
+    @DisplayName("Deve identificar um banco que ja possui livros")
+    public void hasBooksTest() throws Exception {
+        DriverManagerDataSource dataSource = migratedDataSource();
+        DatasetGenerator generator = new DatasetGenerator(dataSource, properties(1));
+
+        assertThat(generator.hasBooks()).isFalse();
+        generator.generate();
+        assertThat(generator.hasBooks()).isTrue();
+    }
+
+    private static DatasetProperties properties(int threads){
+        DatasetProperties properties = new DatasetProperties();
+        properties.setBooks(10_000);
+        properties.setLoans(50_000);
+        properties.setCustomers(1_000);
+        properties.setBatchSize(1_000);
+        properties.setThreads(threads);
+        return properties;
+    }
+
+    private static JdbcTemplate generate(DatasetProperties properties) throws Exception {
+        DriverManagerDataSource dataSource = migratedDataSource();
+        new DatasetGenerator(dataSource, properties).generate();
+        return new JdbcTemplate(dataSource);
+    }
+
+    private static DriverManagerDataSource migratedDataSource(){
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:dataset-" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return dataSource;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String sql, Object... args){
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+}